@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * this class represent a Hack computer without screen and keyboard. it assembles Hack assembly code,
+ * runs it and counts the cycles, so the benchmarks can measure the quality of the generated code and
+ * not only the speed of the translators.
+ */
+public class HackMachine {
+
+    /*********************** Constants **********************/
+    private static final int RAM_SIZE = 1 << 15;
+    private static final int FIRST_VARIABLE = 16;
+    private static final String[] PRE_DEFINED_SYMBOLS = {"SP", "LCL", "ARG", "THIS", "THAT", "SCREEN", "KBD"};
+    private static final int[] PRE_DEFINED_SYMBOLS_ADDRESS = {0, 1, 2, 3, 4, 16384, 24576};
+    // the comp part of a C-instruction, as a=0 mnemonics, and its zx nx zy ny f no bits
+    private static final String[] COMPS = {"0", "1", "-1", "D", "A", "!D", "!A", "-D", "-A", "D+1", "A+1", "D-1",
+            "A-1", "D+A", "D-A", "A-D", "D&A", "D|A"};
+    private static final int[] COMP_BITS = {0b101010, 0b111111, 0b111010, 0b001100, 0b110000, 0b001101, 0b110001,
+            0b001111, 0b110011, 0b011111, 0b110111, 0b001110, 0b110010, 0b000010, 0b010011, 0b000111, 0b000000,
+            0b010101};
+    private static final int A_BIT = 1 << 6;
+    private static final int ZX = 1 << 5;
+    private static final int NX = 1 << 4;
+    private static final int ZY = 1 << 3;
+    private static final int NY = 1 << 2;
+    private static final int F = 1 << 1;
+    private static final int NO = 1;
+    private static final int DEST_A = 4;
+    private static final int DEST_D = 2;
+    private static final int DEST_M = 1;
+    private static final int JUMP_LT = 4;
+    private static final int JUMP_EQ = 2;
+    private static final int JUMP_GT = 1;
+    private static final String INVALID_INSTRUCTION_MESSAGE = "invalid instruction: ";
+
+    /*********************** Data Members ******************/
+    private final int[] values; // A-instruction value, or -1 for a C-instruction
+    private final int[] comps;
+    private final int[] dests;
+    private final int[] jumps;
+    private final int[] ram = new int[RAM_SIZE];
+    private final Map<String, Integer> labels = new HashMap<>();
+    private int haltAddress = -1;
+
+
+    /**
+     * Constructor of class, assembles a program
+     *
+     * @param assembly the lines of the program
+     */
+    public HackMachine(List<String> assembly) {
+        List<String> instructions = new ArrayList<>();
+        Map<String, Integer> symbols = new HashMap<>();
+        for (int i = 0; i < PRE_DEFINED_SYMBOLS.length; i++) {
+            symbols.put(PRE_DEFINED_SYMBOLS[i], PRE_DEFINED_SYMBOLS_ADDRESS[i]);
+        }
+        for (int i = 0; i < FIRST_VARIABLE; i++) {
+            symbols.put("R" + i, i);
+        }
+        for (String line : assembly) { // first pass, labels
+            String instruction = strip(line);
+            if (instruction.startsWith("(")) {
+                labels.put(instruction.substring(1, instruction.length() - 1), instructions.size());
+            } else if (!instruction.isEmpty()) {
+                instructions.add(instruction);
+            }
+        }
+
+        symbols.putAll(labels);
+        int size = instructions.size();
+        values = new int[size];
+        comps = new int[size];
+        dests = new int[size];
+        jumps = new int[size];
+        int nextVariable = FIRST_VARIABLE;
+        for (int pc = 0; pc < size; pc++) { // second pass, variables and decoding
+            String instruction = instructions.get(pc);
+            if (instruction.startsWith("@")) {
+                String symbol = instruction.substring(1);
+                if (Character.isDigit(symbol.charAt(0))) {
+                    values[pc] = Integer.parseInt(symbol);
+                } else {
+                    Integer address = symbols.get(symbol);
+                    if (address == null) {
+                        address = nextVariable++;
+                        symbols.put(symbol, address);
+                    }
+                    values[pc] = address;
+                }
+            } else {
+                values[pc] = -1;
+                decode(pc, instruction);
+            }
+        }
+    }
+
+    /**
+     * reads and assembles a program
+     *
+     * @param asmFile the Xxx.asm file
+     * @return the machine with the program
+     * @throws IOException
+     */
+    public static HackMachine load(Path asmFile) throws IOException {
+        return new HackMachine(Files.readAllLines(asmFile, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return number of instructions in the program
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param address RAM address
+     * @return the signed value in that address
+     */
+    public int peek(int address) {
+        return (short) ram[address];
+    }
+
+    /**
+     * @param address RAM address
+     * @param value   value to set
+     */
+    public void poke(int address, int value) {
+        ram[address] = value & 0xFFFF;
+    }
+
+    /**
+     * makes the program halt when it reaches a label, such as the Sys.halt function of the OS.
+     *
+     * @param label a label of the program
+     * @return true if the program has the label
+     */
+    public boolean haltAt(String label) {
+        Integer address = labels.get(label);
+        haltAddress = address == null ? -1 : address;
+        return address != null;
+    }
+
+    /**
+     * runs the program from address 0 until it halts: when it runs past its last instruction, when it
+     * reaches the halt label, or when it jumps to an A-instruction that loads its own address, like the
+     * '(END) @END 0;JMP' loop.
+     *
+     * @param maxCycles the maximal number of cycles to run
+     * @return number of cycles until the program halted, or -1 if it did not halt in time
+     */
+    public long run(long maxCycles) {
+        int a = 0;
+        int d = 0;
+        int pc = 0;
+        for (long cycles = 0; cycles < maxCycles; cycles++) {
+            if (pc >= values.length || pc == haltAddress) {
+                return cycles;
+            }
+            if (values[pc] >= 0) {
+                a = values[pc++];
+                continue;
+            }
+            int comp = comps[pc];
+            int x = d;
+            int y = (comp & A_BIT) != 0 ? ram[a & (RAM_SIZE - 1)] : a;
+            if ((comp & ZX) != 0) {
+                x = 0;
+            }
+            if ((comp & NX) != 0) {
+                x = ~x;
+            }
+            if ((comp & ZY) != 0) {
+                y = 0;
+            }
+            if ((comp & NY) != 0) {
+                y = ~y;
+            }
+            int out = (comp & F) != 0 ? x + y : x & y;
+            if ((comp & NO) != 0) {
+                out = ~out;
+            }
+            out &= 0xFFFF;
+
+            int dest = dests[pc];
+            if ((dest & DEST_M) != 0) {
+                ram[a & (RAM_SIZE - 1)] = out;
+            }
+            int jumpTarget = a;
+            if ((dest & DEST_A) != 0) {
+                a = out;
+            }
+            if ((dest & DEST_D) != 0) {
+                d = out;
+            }
+
+            int jump = jumps[pc];
+            short value = (short) out;
+            boolean isJump = (jump & JUMP_LT) != 0 && value < 0 || (jump & JUMP_EQ) != 0 && value == 0
+                    || (jump & JUMP_GT) != 0 && value > 0;
+            if (isJump) {
+                if (jumpTarget == pc - 1 && values[jumpTarget] == jumpTarget) {
+                    return cycles + 1; // halting loop
+                }
+                pc = jumpTarget;
+            } else {
+                pc++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * decodes a C-instruction, dest=comp;jump
+     *
+     * @param pc          address of the instruction
+     * @param instruction the instruction without spaces
+     */
+    private void decode(int pc, String instruction) {
+        int equals = instruction.indexOf('=');
+        int semicolon = instruction.indexOf(';');
+        String dest = equals < 0 ? "" : instruction.substring(0, equals);
+        String comp = instruction.substring(equals + 1, semicolon < 0 ? instruction.length() : semicolon);
+        String jump = semicolon < 0 ? "" : instruction.substring(semicolon + 1);
+
+        int aBit = 0;
+        if (comp.indexOf('M') >= 0) {
+            aBit = A_BIT;
+            comp = comp.replace('M', 'A');
+        }
+        comps[pc] = aBit | compBits(comp, instruction);
+        dests[pc] = (dest.indexOf('A') >= 0 ? DEST_A : 0) | (dest.indexOf('D') >= 0 ? DEST_D : 0)
+                | (dest.indexOf('M') >= 0 ? DEST_M : 0);
+        jumps[pc] = jumpBits(jump, instruction);
+    }
+
+    /**
+     * @param jump        jump mnemonic, or an empty string
+     * @param instruction the whole instruction, for the error message
+     * @return the lt eq gt bits of the jump
+     */
+    private static int jumpBits(String jump, String instruction) {
+        switch (jump) {
+            case "":
+                return 0;
+            case "JGT":
+                return JUMP_GT;
+            case "JEQ":
+                return JUMP_EQ;
+            case "JGE":
+                return JUMP_GT | JUMP_EQ;
+            case "JLT":
+                return JUMP_LT;
+            case "JNE":
+                return JUMP_LT | JUMP_GT;
+            case "JLE":
+                return JUMP_LT | JUMP_EQ;
+            case "JMP":
+                return JUMP_LT | JUMP_EQ | JUMP_GT;
+            default:
+                throw new IllegalArgumentException(INVALID_INSTRUCTION_MESSAGE + instruction);
+        }
+    }
+
+    /**
+     * @param comp        comp mnemonic with A in place of M
+     * @param instruction the whole instruction, for the error message
+     * @return the zx nx zy ny f no bits of the comp
+     */
+    private static int compBits(String comp, String instruction) {
+        String swapped = comp; // commutative forms, such as A+D
+        if (comp.length() == 3 && "+&|".indexOf(comp.charAt(1)) >= 0) {
+            swapped = new String(new char[]{comp.charAt(2), comp.charAt(1), comp.charAt(0)});
+        }
+        for (int i = 0; i < COMPS.length; i++) {
+            if (COMPS[i].equals(comp) || COMPS[i].equals(swapped)) {
+                return COMP_BITS[i];
+            }
+        }
+        throw new IllegalArgumentException(INVALID_INSTRUCTION_MESSAGE + instruction);
+    }
+
+    /**
+     * @param line line of assembly code
+     * @return the line without comments and spaces
+     */
+    private static String strip(String line) {
+        int comment = line.indexOf("//");
+        if (comment >= 0) {
+            line = line.substring(0, comment);
+        }
+        StringBuilder stripped = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                stripped.append(line.charAt(i));
+            }
+        }
+        return stripped.toString();
+    }
+
+
+}
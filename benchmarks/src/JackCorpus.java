@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * this class writes the synthetic Jack classes of the benchmarks. the classes are random but depend only
+ * on their seed, and use all the kinds of tokens and comments, in the layout of hand written Jack code.
+ */
+public class JackCorpus {
+
+    /*********************** Constants **********************/
+    private static final int FIELDS = 4;
+    private static final int LOCALS = 4;
+    private static final int MAX_STATEMENTS = 12;
+    private static final int MAX_EXPRESSION_DEPTH = 3;
+    private static final String[] OPS = {"+", "-", "*", "/", "&", "|", "<", ">", "="};
+    private static final String[] KEYWORD_CONSTANTS = {"true", "false", "null", "this"};
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon"};
+
+
+    /**
+     * writes a class of functions and methods, each with a doc comment and a random body.
+     *
+     * @param jackFile    the file to write
+     * @param className   name of the class
+     * @param subroutines number of subroutines in the class
+     * @param seed        seed of the random class
+     * @throws IOException
+     */
+    public static void writeClass(Path jackFile, String className, int subroutines, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(jackFile))) {
+            out.println("// generated by JackCorpus, seed " + seed);
+            out.println("/**");
+            out.println(" * " + className + " is a synthetic class.");
+            out.println(" */");
+            out.println("class " + className + " {");
+            out.println("    field int f0, f1, f2, f3; // the fields");
+            out.println("    static Array table;");
+            out.println();
+            for (int i = 0; i < subroutines; i++) {
+                out.println("    /** subroutine " + i + " of " + className + " */");
+                boolean isMethod = random.nextBoolean();
+                out.println("    " + (isMethod ? "method" : "function") + " int s" + i + "(int a, int b) {");
+                out.println("        var int l0, l1, l2, l3;");
+                out.println("        var String text;");
+                int statements = 1 + random.nextInt(MAX_STATEMENTS);
+                for (int j = 0; j < statements; j++) {
+                    writeStatement(out, random, className, isMethod, i);
+                }
+                out.println("        return " + expression(random, isMethod, 0) + ";");
+                out.println("    }");
+                out.println();
+            }
+            out.println("}");
+        }
+    }
+
+    /**
+     * writes a single statement of a subroutine body.
+     *
+     * @param out       - writer of the class
+     * @param random    - random of the class
+     * @param className - name of the class
+     * @param isMethod  - true if the statement is in a method, which may use the fields
+     * @param index     - index of the subroutine, it calls only the subroutines before it
+     */
+    private static void writeStatement(PrintWriter out, Random random, String className, boolean isMethod,
+                                       int index) {
+        switch (random.nextInt(6)) {
+            case 0:
+                out.println("        let l" + random.nextInt(LOCALS) + " = " + expression(random, isMethod, 0) + ";");
+                break;
+            case 1:
+                out.println("        let table[" + expression(random, isMethod, 1) + "] = "
+                        + expression(random, isMethod, 0) + "; // store");
+                break;
+            case 2:
+                out.println("        if (" + expression(random, isMethod, 0) + ") {");
+                out.println("            let a = a + 1;");
+                out.println("        } else {");
+                out.println("            let b = b - 1;");
+                out.println("        }");
+                break;
+            case 3:
+                out.println("        while (l0 < " + random.nextInt(100) + ") {");
+                out.println("            let l0 = l0 + 1; /* count */");
+                out.println("        }");
+                break;
+            case 4:
+                out.println("        let text = \"" + WORDS[random.nextInt(WORDS.length)] + " "
+                        + random.nextInt(1000) + "\";");
+                out.println("        do Output.printString(text);");
+                break;
+            default:
+                if (index > 0) {
+                    out.println("        do " + className + ".s" + random.nextInt(index) + "("
+                            + expression(random, isMethod, 1) + ", " + expression(random, isMethod, 1) + ");");
+                } else {
+                    out.println("        do Output.println();");
+                }
+        }
+    }
+
+    /**
+     * @param random   - random of the class
+     * @param isMethod - true if the expression is in a method, which may use the fields
+     * @param depth    - depth of the expression in the statement
+     * @return a random expression
+     */
+    private static String expression(Random random, boolean isMethod, int depth) {
+        String term;
+        int choice = random.nextInt(depth < MAX_EXPRESSION_DEPTH ? 8 : 5);
+        if (choice == 0) {
+            term = Integer.toString(random.nextInt(32768));
+        } else if (choice == 1) {
+            term = KEYWORD_CONSTANTS[random.nextInt(isMethod ? 4 : 3)];
+        } else if (choice == 2) {
+            term = isMethod ? "f" + random.nextInt(FIELDS) : "a";
+        } else if (choice == 3) {
+            term = "l" + random.nextInt(LOCALS);
+        } else if (choice == 4) {
+            term = "b";
+        } else if (choice == 5) {
+            term = "(" + expression(random, isMethod, depth + 1) + ")";
+        } else if (choice == 6) {
+            term = (random.nextBoolean() ? "-" : "~") + expression(random, isMethod, depth + 1);
+        } else {
+            term = "table[" + expression(random, isMethod, depth + 1) + "]";
+        }
+        if (depth < MAX_EXPRESSION_DEPTH && random.nextInt(3) == 0) {
+            return term + " " + OPS[random.nextInt(OPS.length)] + " " + expression(random, isMethod, depth + 1);
+        }
+        return term;
+    }
+
+
+}
@@ -0,0 +1,216 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * runs the throughput benchmark of the JackTokenizer of project11. every tokenizer is loaded from its own
+ * compiled classes, with its own class loader, so a tokenizer can be compared to an older build of it.
+ * the sources are read into memory first, and every run tokenizes all of them from memory and reads
+ * every token, so the results measure the tokenizer and not the disk.
+ * <p>
+ * usage: java TokenizerBenchmark -p11 classesDir [-p11 classesDir ...] [-runs n] [corpusDir ...]
+ * at least one classes directory is required, since the IntelliJ output directory may hold an older build
+ * of the tokenizer.
+ * every corpus directory holds .jack files. the checksum column is a hash of all the tokens and their
+ * types, equal for tokenizers that found the same tokens.
+ */
+public class TokenizerBenchmark {
+
+    /*********************** Constants **********************/
+    private static final String MISSING_CLASSES_MESSAGE = "missing -p11 classesDir, the directory of the "
+            + "compiled classes of the project11 tokenizer";
+    private static final String MISSING_VALUE_MESSAGE = "missing value of option: ";
+    private static final int WARMUP_RUNS = 5;
+    private static final int DEFAULT_RUNS = 10;
+    private static final int GENERATED_CLASSES = 50;
+    private static final int GENERATED_SUBROUTINES = 40;
+    private static final long SEED = 42;
+    private static final String JACK_SUFFIX = ".jack";
+    private static final String ROW_FORMAT = "%-14s %-40s %10s %9s %12s %10s%n";
+
+
+    public static void main(String[] args) throws Exception {
+        List<String> project11 = new ArrayList<>();
+        int runs = DEFAULT_RUNS;
+        List<Path> corpora = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p11":
+                    project11.add(valueOf(args, ++i));
+                    break;
+                case "-runs":
+                    runs = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                default:
+                    corpora.add(Paths.get(args[i]));
+            }
+        }
+        if (project11.isEmpty()) {
+            throw new IllegalArgumentException(MISSING_CLASSES_MESSAGE);
+        }
+
+        List<Tokenizer> tokenizers = new ArrayList<>();
+        for (String classes : project11) {
+            tokenizers.add(new Tokenizer(classes));
+        }
+        Path generated = Files.createTempDirectory("jack-benchmark");
+        for (int i = 0; i < GENERATED_CLASSES; i++) {
+            JackCorpus.writeClass(generated.resolve("C" + i + JACK_SUFFIX), "C" + i, GENERATED_SUBROUTINES, SEED + i);
+        }
+        List<Path> allCorpora = new ArrayList<>();
+        allCorpora.add(generated);
+        allCorpora.addAll(corpora);
+
+        System.out.printf(ROW_FORMAT, "corpus", "tokenizer", "tokens", "ms/run", "tokens/s", "checksum");
+        for (Path corpus : allCorpora) {
+            List<String> sources = new ArrayList<>();
+            for (Path jackFile : listFiles(corpus.toAbsolutePath(), JACK_SUFFIX)) {
+                sources.add(new String(Files.readAllBytes(jackFile), StandardCharsets.UTF_8));
+            }
+            String corpusName = corpus == generated ? "generated" : corpus.toAbsolutePath().getFileName().toString();
+            for (Tokenizer tokenizer : tokenizers) {
+                benchmark(corpusName, tokenizer, sources, runs);
+            }
+        }
+    }
+
+    /**
+     * tokenizes a corpus with a tokenizer and prints a row of results
+     *
+     * @param corpusName - name of the corpus
+     * @param tokenizer  - the tokenizer
+     * @param sources    - the Jack classes of the corpus
+     * @param runs       - number of measured runs
+     * @throws Exception
+     */
+    private static void benchmark(String corpusName, Tokenizer tokenizer, List<String> sources, int runs)
+            throws Exception {
+        long[] times = new long[runs];
+        long tokens = 0;
+        int checksum = 0;
+        for (int i = -WARMUP_RUNS; i < runs; i++) {
+            tokens = 0;
+            checksum = 0;
+            long start = System.nanoTime();
+            for (String source : sources) {
+                Object instance = tokenizer.open(new StringReader(source));
+                while (tokenizer.hasMoreTokens(instance)) {
+                    tokenizer.advance(instance);
+                    checksum = 31 * checksum + tokenizer.token(instance).hashCode();
+                    tokens++;
+                }
+            }
+            if (i >= 0) {
+                times[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        double millis = times[runs / 2] / 1e6; // median
+        System.out.printf(ROW_FORMAT, corpusName, tokenizer.name, tokens, String.format("%.2f", millis),
+                String.format("%.0f", tokens / (millis / 1000)), String.format("%08x", checksum));
+    }
+
+    /**
+     * @param directory - a directory
+     * @param suffix    - suffix of the files to list
+     * @return the files in the directory with that suffix, sorted by name
+     * @throws IOException
+     */
+    private static List<Path> listFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param args  - command line arguments
+     * @param index - index of the value of the option before it
+     * @return the value of the option
+     */
+    private static String valueOf(String[] args, int index) {
+        if (index == args.length) {
+            throw new IllegalArgumentException(MISSING_VALUE_MESSAGE + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * a JackTokenizer, loaded from its compiled classes. its methods are package private, so they are
+     * made accessible once, when it is loaded.
+     */
+    private static class Tokenizer {
+        private final String name;
+        private final Constructor<?> constructor;
+        private final Method hasMoreTokens;
+        private final Method advance;
+        private final Field currType;
+        private final Field currentToken;
+
+        /**
+         * @param classes - directory of the compiled classes of the compiler
+         * @throws Exception if the tokenizer can not be loaded
+         */
+        Tokenizer(String classes) throws Exception {
+            this.name = classes;
+            URL[] classPath = {new File(classes).toURI().toURL()};
+            ClassLoader loader = new URLClassLoader(classPath, TokenizerBenchmark.class.getClassLoader().getParent());
+            Class<?> tokenizer = loader.loadClass("JackTokenizer");
+            constructor = tokenizer.getConstructor(Reader.class);
+            hasMoreTokens = tokenizer.getDeclaredMethod("hasMoreTokens");
+            hasMoreTokens.setAccessible(true);
+            advance = tokenizer.getDeclaredMethod("advance");
+            advance.setAccessible(true);
+            currType = tokenizer.getField("currType");
+            currentToken = tokenizer.getField("currentToken");
+        }
+
+        /**
+         * @param source - Jack code
+         * @return a new tokenizer of the code
+         * @throws Exception thrown by the tokenizer
+         */
+        Object open(Reader source) throws Exception {
+            try {
+                return constructor.newInstance(source);
+            } catch (InvocationTargetException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+
+        boolean hasMoreTokens(Object instance) throws Exception {
+            return (Boolean) hasMoreTokens.invoke(instance);
+        }
+
+        void advance(Object instance) throws Exception {
+            advance.invoke(instance);
+        }
+
+        /**
+         * @param instance - a tokenizer
+         * @return the current token with its type
+         * @throws Exception
+         */
+        String token(Object instance) throws Exception {
+            return currType.get(instance) + ":" + currentToken.get(instance);
+        }
+    }
+
+
+}
@@ -0,0 +1,332 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * runs the benchmarks of the vm translators of project07 and project08. each translator is loaded from
+ * its own compiled classes, with its own class loader since both have the same class names. for every
+ * corpus the benchmark measures the translation throughput in vm lines per second and the size of the
+ * output, and runs the output on a HackMachine to count its cycles.
+ * <p>
+ * usage: java TranslatorBenchmark -p07 classesDir -p08 classesDir [-runs n] [corpusDir ...]
+ * the classes directories are required, since the IntelliJ output directories may hold older builds of the
+ * translators. a translator that is run with options must have them, as a project08 with TranslatorOptions.
+ * every corpus directory holds .vm files; a program with Sys.init is run by the project08 translators,
+ * until it calls Sys.halt. the stack column is a checksum of the stack when the program halted.
+ */
+public class TranslatorBenchmark {
+
+    /*********************** Constants **********************/
+    private static final String MISSING_CLASSES_MESSAGE = "missing %s classesDir, the directory of the "
+            + "compiled classes of the %s vm translator";
+    private static final String MISSING_VALUE_MESSAGE = "missing value of option: ";
+    private static final String OPTIONS_CLASS = "TranslatorOptions";
+    private static final int WARMUP_RUNS = 3;
+    private static final int DEFAULT_RUNS = 10;
+    private static final int STACK_PROGRAM_LINES = 20000;
+    private static final int CALL_PROGRAM_SIZE = 18;
+    private static final long SEED = 42;
+    private static final long MAX_CYCLES = 200_000_000L;
+    private static final int STACK_BASE = 256;
+    private static final int BOOTSTRAP_FRAME = 5; // the frame of the bootstrap call to Sys.init
+    // the pointers the course test scripts set for programs without bootstrap code
+    private static final int[] TEST_POINTERS = {256, 300, 400, 3000, 3010};
+    private static final String VM_SUFFIX = ".vm";
+    private static final String ASM_SUFFIX = ".asm";
+    private static final String ENTRY_FUNCTION = "function Sys.init";
+    private static final String HALT_FUNCTION = "Sys.halt";
+    private static final String[] STACK_COMMAND_WORDS = {"push", "pop", "add", "sub", "neg", "eq", "gt", "lt",
+            "and", "or", "not"};
+    private static final String ROW_FORMAT = "%-14s %-44s %9s %9s %12s %12s %12s %10s%n";
+
+
+    public static void main(String[] args) throws Exception {
+        String project07 = null;
+        String project08 = null;
+        int runs = DEFAULT_RUNS;
+        List<Path> corpora = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p07":
+                    project07 = valueOf(args, ++i);
+                    break;
+                case "-p08":
+                    project08 = valueOf(args, ++i);
+                    break;
+                case "-runs":
+                    runs = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                default:
+                    corpora.add(Paths.get(args[i]));
+            }
+        }
+        if (project07 == null) {
+            throw new IllegalArgumentException(String.format(MISSING_CLASSES_MESSAGE, "-p07", "project07"));
+        }
+        if (project08 == null) {
+            throw new IllegalArgumentException(String.format(MISSING_CLASSES_MESSAGE, "-p08", "project08"));
+        }
+
+        List<Translator> translators = new ArrayList<>();
+        translators.add(new Translator("project07", project07, false));
+        translators.add(new Translator("project08", project08, true));
+        translators.add(new Translator("project08 -inline 8 -tailcalls -staticalloc", project08, true, "-inline",
+                "8", "-tailcalls", "-staticalloc"));
+
+        Path work = Files.createTempDirectory("vm-benchmark");
+        List<Corpus> allCorpora = new ArrayList<>();
+        Path stack = Files.createDirectories(work.resolve("corpus").resolve("Stack"));
+        VmCorpus.writeStackProgram(stack.resolve("Stack.vm"), STACK_PROGRAM_LINES, SEED, false);
+        Path stackSys = Files.createDirectories(work.resolve("corpus").resolve("StackSys"));
+        VmCorpus.writeStackProgram(stackSys.resolve("Sys.vm"), STACK_PROGRAM_LINES, SEED, true);
+        allCorpora.add(new Corpus("stack", stack, stackSys));
+        Path calls = Files.createDirectories(work.resolve("corpus").resolve("Calls"));
+        VmCorpus.writeCallProgram(calls.resolve("Sys.vm"), CALL_PROGRAM_SIZE);
+        allCorpora.add(new Corpus("calls", null, calls));
+        for (Path corpus : corpora) {
+            Path directory = corpus.toAbsolutePath();
+            allCorpora.add(new Corpus(directory.getFileName().toString(), isStackOnly(directory) ? directory : null,
+                    directory));
+        }
+
+        System.out.printf(ROW_FORMAT, "corpus", "translator", "vm lines", "ms/run", "lines/s", "instructions",
+                "cycles", "stack");
+        for (Corpus corpus : allCorpora) {
+            for (Translator translator : translators) {
+                Path source = translator.hasBootstrap ? corpus.programDirectory : corpus.stackDirectory;
+                if (source != null) {
+                    benchmark(corpus.name, translator, source, work, runs);
+                }
+            }
+        }
+    }
+
+    /**
+     * translates a corpus with a translator, runs the output and prints a row of results
+     *
+     * @param corpusName - name of the corpus
+     * @param translator - the translator
+     * @param source     - directory of the vm files
+     * @param work       - directory for copies of the corpus
+     * @param runs       - number of measured runs
+     * @throws Exception
+     */
+    private static void benchmark(String corpusName, Translator translator, Path source, Path work, int runs)
+            throws Exception {
+        Path directory = work.resolve(translator.name.replace(' ', '_')).resolve(source.getFileName());
+        Files.createDirectories(directory);
+        List<Path> vmFiles = listFiles(source, VM_SUFFIX);
+        long vmLines = 0;
+        for (Path vmFile : vmFiles) {
+            Files.copy(vmFile, directory.resolve(vmFile.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            vmLines += countCommands(vmFile);
+        }
+
+        long[] times = new long[runs];
+        for (int i = -WARMUP_RUNS; i < runs; i++) {
+            long start = System.nanoTime();
+            translator.translate(directory);
+            if (i >= 0) {
+                times[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        double millis = times[runs / 2] / 1e6; // median
+
+        List<Path> outputs = translator.hasBootstrap ?
+                Arrays.asList(directory.resolve(directory.getFileName() + ASM_SUFFIX)) :
+                listFiles(directory, ASM_SUFFIX);
+        long instructions = 0;
+        for (Path output : outputs) {
+            instructions += HackMachine.load(output).size();
+        }
+        String cycles = "-";
+        String stack = "-";
+        boolean isRunnable = translator.hasBootstrap ? hasEntryFunction(vmFiles) : outputs.size() == 1;
+        if (isRunnable) {
+            HackMachine machine = HackMachine.load(outputs.get(0));
+            machine.haltAt(HALT_FUNCTION);
+            if (!translator.hasBootstrap) {
+                for (int i = 0; i < TEST_POINTERS.length; i++) {
+                    machine.poke(i, TEST_POINTERS[i]);
+                }
+            }
+            long count = machine.run(MAX_CYCLES);
+            cycles = count < 0 ? "no halt" : Long.toString(count);
+            stack = stackChecksum(machine, translator.hasBootstrap ? STACK_BASE + BOOTSTRAP_FRAME : STACK_BASE);
+        }
+        System.out.printf(ROW_FORMAT, corpusName, translator.name, vmLines, String.format("%.2f", millis),
+                String.format("%.0f", vmLines / (millis / 1000)), instructions, cycles, stack);
+    }
+
+    /**
+     * @param machine - a machine after a run
+     * @param base    - address of the bottom of the stack of the program
+     * @return a checksum of the values on the stack, equal for translations that computed the same
+     */
+    private static String stackChecksum(HackMachine machine, int base) {
+        int top = machine.peek(0);
+        int[] values = new int[Math.max(0, top - base)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = machine.peek(base + i);
+        }
+        return String.format("%08x", Arrays.hashCode(values));
+    }
+
+    /**
+     * @param directory - a directory
+     * @param suffix    - suffix of the files to list
+     * @return the files in the directory with that suffix, sorted by name
+     * @throws IOException
+     */
+    private static List<Path> listFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param vmFile - a vm file
+     * @return number of commends in the file, without empty lines and comments
+     * @throws IOException
+     */
+    private static long countCommands(Path vmFile) throws IOException {
+        try (Stream<String> lines = Files.lines(vmFile, StandardCharsets.US_ASCII)) {
+            return lines.map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("//")).count();
+        }
+    }
+
+    /**
+     * @param vmFiles - vm files of a program
+     * @return true if the program has a Sys.init function
+     * @throws IOException
+     */
+    private static boolean hasEntryFunction(List<Path> vmFiles) throws IOException {
+        for (Path vmFile : vmFiles) {
+            try (Stream<String> lines = Files.lines(vmFile, StandardCharsets.US_ASCII)) {
+                if (lines.anyMatch(line -> line.trim().startsWith(ENTRY_FUNCTION))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param directory - directory of vm files
+     * @return true if all the commends are stack commends, which the project07 translator supports
+     * @throws IOException
+     */
+    private static boolean isStackOnly(Path directory) throws IOException {
+        List<String> words = Arrays.asList(STACK_COMMAND_WORDS);
+        for (Path vmFile : listFiles(directory, VM_SUFFIX)) {
+            try (Stream<String> lines = Files.lines(vmFile, StandardCharsets.US_ASCII)) {
+                boolean isStackOnly = lines.map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("//"))
+                        .allMatch(line -> words.contains(line.split("\\s+")[0]));
+                if (!isStackOnly) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param args  - command line arguments
+     * @param index - index of the value of the option before it
+     * @return the value of the option
+     */
+    private static String valueOf(String[] args, int index) {
+        if (index == args.length) {
+            throw new IllegalArgumentException(MISSING_VALUE_MESSAGE + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * a vm translator, loaded from its compiled classes and run through its main method.
+     */
+    private static class Translator {
+        private final String name;
+        private final boolean hasBootstrap;
+        private final String[] options;
+        private final Method main;
+
+        /**
+         * @param name         - name of the translator in the results
+         * @param classes      - directory of the compiled classes of the translator
+         * @param hasBootstrap - true if the translator writes a single Xxx.asm with bootstrap code for a
+         *                     directory, false if it writes an .asm file for every .vm file
+         * @param options      - command line options that follow the input path
+         * @throws Exception if the translator can not be loaded, or does not have options and some are given
+         */
+        Translator(String name, String classes, boolean hasBootstrap, String... options) throws Exception {
+            this.name = name;
+            this.hasBootstrap = hasBootstrap;
+            this.options = options;
+            URL[] classPath = {new File(classes).toURI().toURL()};
+            ClassLoader loader = new URLClassLoader(classPath, TranslatorBenchmark.class.getClassLoader().getParent());
+            main = loader.loadClass("VMtranslator").getMethod("main", String[].class);
+            if (options.length > 0) {
+                try {
+                    loader.loadClass(OPTIONS_CLASS);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalArgumentException("the translator in " + classes + " has no "
+                            + OPTIONS_CLASS + ", an older build can not run " + name, e);
+                }
+            }
+        }
+
+        /**
+         * @param directory - the directory to translate
+         * @throws Exception thrown by the translator
+         */
+        void translate(Path directory) throws Exception {
+            String[] args = new String[options.length + 1];
+            args[0] = directory.toString();
+            System.arraycopy(options, 0, args, 1, options.length);
+            try {
+                main.invoke(null, (Object) args);
+            } catch (InvocationTargetException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * a corpus of vm files, as a program of stack commends only and as a program with Sys.init.
+     */
+    private static class Corpus {
+        private final String name;
+        private final Path stackDirectory;
+        private final Path programDirectory;
+
+        /**
+         * @param name             - name of the corpus in the results
+         * @param stackDirectory   - the corpus for translators of stack commends only, or null
+         * @param programDirectory - the corpus for translators with bootstrap code
+         */
+        Corpus(String name, Path stackDirectory, Path programDirectory) {
+            this.name = name;
+            this.stackDirectory = stackDirectory;
+            this.programDirectory = programDirectory;
+        }
+    }
+
+
+}
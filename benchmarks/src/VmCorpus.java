@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * this class writes the synthetic vm programs of the benchmarks. the programs are random but depend
+ * only on their seed, so every run of the benchmarks translates the same code.
+ */
+public class VmCorpus {
+
+    /*********************** Constants **********************/
+    private static final int MAX_DEPTH = 64;
+    private static final int THIS_ADDRESS = 3000;
+    private static final int THAT_ADDRESS = 3100;
+    private static final String[] SEGMENTS = {"temp", "static", "this", "that"};
+    private static final int[] SEGMENT_SIZES = {8, 16, 16, 16};
+    private static final String[] BINARY_COMMANDS = {"add", "sub", "and", "or", "eq", "gt", "lt"};
+    private static final String[] UNARY_COMMANDS = {"neg", "not"};
+    private static final String END_LOOP = "label END\n" + "goto END\n";
+
+
+    /**
+     * writes a program of stack commends only: push, pop and arithmetic, on all the segments that do not
+     * need a frame.
+     *
+     * @param vmFile    the file to write
+     * @param lines     number of commends
+     * @param seed      seed of the random program
+     * @param asSysInit true to write the commends as the body of Sys.init, for a translator with bootstrap
+     *                  code, false to write them as is, for a translator of stack commends only
+     * @throws IOException
+     */
+    public static void writeStackProgram(Path vmFile, int lines, long seed, boolean asSysInit) throws IOException {
+        Random random = new Random(seed);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(vmFile))) {
+            if (asSysInit) {
+                out.println("function Sys.init 0");
+            }
+            out.println("push constant " + THIS_ADDRESS);
+            out.println("pop pointer 0");
+            out.println("push constant " + THAT_ADDRESS);
+            out.println("pop pointer 1");
+            int depth = 0;
+            for (int i = 0; i < lines; i++) {
+                int choice = random.nextInt(100);
+                if (depth < 2 || choice < 30 && depth < MAX_DEPTH) {
+                    out.println("push constant " + random.nextInt(1000));
+                    depth++;
+                } else if (choice < 45 && depth < MAX_DEPTH) {
+                    int segment = random.nextInt(SEGMENTS.length);
+                    out.println("push " + SEGMENTS[segment] + " " + random.nextInt(SEGMENT_SIZES[segment]));
+                    depth++;
+                } else if (choice < 60) {
+                    int segment = random.nextInt(SEGMENTS.length);
+                    out.println("pop " + SEGMENTS[segment] + " " + random.nextInt(SEGMENT_SIZES[segment]));
+                    depth--;
+                } else if (choice < 90) {
+                    out.println(BINARY_COMMANDS[random.nextInt(BINARY_COMMANDS.length)]);
+                    depth--;
+                } else {
+                    out.println(UNARY_COMMANDS[random.nextInt(UNARY_COMMANDS.length)]);
+                }
+            }
+            if (asSysInit) {
+                out.print(END_LOOP);
+            }
+        }
+    }
+
+    /**
+     * writes a program of function calls: recursion, tail recursion, small leaf functions and loops.
+     *
+     * @param vmFile the file to write
+     * @param size   the argument of the recursive functions, the work grows with it
+     * @throws IOException
+     */
+    public static void writeCallProgram(Path vmFile, int size) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(vmFile))) {
+            out.print("function Sys.init 0\n" +
+                    "push constant " + size + "\n" +
+                    "call Sys.fib 1\n" +
+                    "pop static 0\n" +
+                    "push constant " + size * 20 + "\n" +
+                    "push constant 0\n" +
+                    "call Sys.sum 2\n" +
+                    "pop static 1\n" +
+                    "push constant 0\n" +
+                    "pop static 2\n" +
+                    "label LOOP\n" +
+                    "push static 2\n" +
+                    "push constant " + size * 20 + "\n" +
+                    "lt\n" +
+                    "not\n" +
+                    "if-goto DONE\n" +
+                    "push static 2\n" +
+                    "call Sys.twice 1\n" +
+                    "push static 3\n" +
+                    "call Sys.max 2\n" +
+                    "pop static 3\n" +
+                    "push static 2\n" +
+                    "push constant 1\n" +
+                    "add\n" +
+                    "pop static 2\n" +
+                    "goto LOOP\n" +
+                    "label DONE\n" +
+                    END_LOOP +
+                    // fib(n) = n < 2 ? n : fib(n-1) + fib(n-2)
+                    "function Sys.fib 0\n" +
+                    "push argument 0\n" +
+                    "push constant 2\n" +
+                    "lt\n" +
+                    "if-goto BASE\n" +
+                    "push argument 0\n" +
+                    "push constant 1\n" +
+                    "sub\n" +
+                    "call Sys.fib 1\n" +
+                    "push argument 0\n" +
+                    "push constant 2\n" +
+                    "sub\n" +
+                    "call Sys.fib 1\n" +
+                    "add\n" +
+                    "return\n" +
+                    "label BASE\n" +
+                    "push argument 0\n" +
+                    "return\n" +
+                    // sum(n, acc) = n == 0 ? acc : sum(n-1, acc+n)
+                    "function Sys.sum 0\n" +
+                    "push argument 0\n" +
+                    "if-goto STEP\n" +
+                    "push argument 1\n" +
+                    "return\n" +
+                    "label STEP\n" +
+                    "push argument 0\n" +
+                    "push constant 1\n" +
+                    "sub\n" +
+                    "push argument 1\n" +
+                    "push argument 0\n" +
+                    "add\n" +
+                    "call Sys.sum 2\n" +
+                    "return\n" +
+                    "function Sys.twice 0\n" +
+                    "push argument 0\n" +
+                    "push argument 0\n" +
+                    "add\n" +
+                    "return\n" +
+                    "function Sys.max 1\n" +
+                    "push argument 0\n" +
+                    "pop local 0\n" +
+                    "push argument 1\n" +
+                    "push local 0\n" +
+                    "gt\n" +
+                    "if-goto SECOND\n" +
+                    "push local 0\n" +
+                    "return\n" +
+                    "label SECOND\n" +
+                    "push argument 1\n" +
+                    "return\n");
+        }
+    }
+
+
+}
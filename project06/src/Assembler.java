@@ -1,9 +1,13 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * this class obj get an input file "XXX.asm", with symbolic hack language instructions, and output a binary
@@ -25,6 +29,7 @@ public class Assembler {
             13, 14, 15, 16384, 24576};
 
     private static final int INIT_ROM = 0;
+    private static final int INIT_VARIABLE_ADDRESS = 16;
 
     private static final int A_TYPE = 0;
     private static final int C_TYPE = 1;
@@ -34,6 +39,7 @@ public class Assembler {
      *******************************/
     private SymbolTable symbolTable;
     private Code code = new Code();
+    private Integer n = INIT_VARIABLE_ADDRESS; // address of the next variable symbol
 
     /**
      * Assembler obj constructor
@@ -77,6 +83,28 @@ public class Assembler {
         }
     }
 
+    /**
+     * translates assembly code from a stream and writes the binary code into a stream. the first parse
+     * runs while the input is read, so it overlaps the program that writes the input, and keeps the
+     * lines for the second parse. the output stream is flushed but not closed.
+     *
+     * @param input  - Reader of hack assembly code, read until its end and closed
+     * @param output - Writer for the binary code
+     * @throws IOException
+     */
+    public static void assemble(Reader input, Writer output) throws IOException {
+        Assembler assembler = new Assembler();
+        List<String> program = new ArrayList<>();
+        Parser fileParser = new Parser(input);
+        assembler.firstParse(fileParser, program);
+
+        PrintWriter out = new PrintWriter(output);
+        for (String line : program) {
+            assembler.translateLine(fileParser, line, out);
+        }
+        out.flush();
+    }
+
     /**
      * this func parses the file for the first time ignoring all commends except label symbols - (XXX), and
      * add them to a symbol table.
@@ -85,11 +113,24 @@ public class Assembler {
      * @throws IOException
      */
     private void firstParse(File inputFile) throws IOException {
+        firstParse(new Parser(inputFile), null);
+    }
 
-        Parser fileParser = new Parser(inputFile);
+    /**
+     * this func parses the input for the first time ignoring all commends except label symbols - (XXX), and
+     * add them to a symbol table. the parser is closed at the end of the input.
+     *
+     * @param fileParser - Parser of the input
+     * @param program    - list to keep the read lines in, or null
+     * @throws IOException
+     */
+    private void firstParse(Parser fileParser, List<String> program) throws IOException {
         String line = fileParser.readLine();
         int romAddress = INIT_ROM;
         while (line != null) {
+            if (program != null) {
+                program.add(line);
+            }
 
             fileParser.lineAnalizer(line);
             String symbol = fileParser.getLineSymbol();
@@ -128,43 +169,53 @@ public class Assembler {
         Path outputPath = Paths.get(outputName);
         PrintWriter out = new PrintWriter(Files.newBufferedWriter(outputPath));
 
-        String lineOutput;
-        Integer n = 16;
         while (line != null) {
-            fileParser.lineAnalizer(line); // updates parser fields
-            String symbol = fileParser.getLineSymbol();
-            int type = fileParser.getInstructionType();
+            translateLine(fileParser, line, out);
+            line = fileParser.readLine();
+        }
+        fileParser.close();
+        out.close();
+    }
+
+    /**
+     * this func translates a single line in the second parse, and writes its binary code if it is an
+     * instruction.
+     *
+     * @param fileParser - Parser to analyze the line with
+     * @param line       - a line of the assembly code
+     * @param out        - writer of the translated code
+     */
+    private void translateLine(Parser fileParser, String line, PrintWriter out) {
+        String lineOutput;
+        fileParser.lineAnalizer(line); // updates parser fields
+        String symbol = fileParser.getLineSymbol();
+        int type = fileParser.getInstructionType();
 
 
-            if (type == A_TYPE) {
-                if (fileParser.isAaNumber(symbol)) { // checks if A instruction in @INTEGER
-                    lineOutput = code.translator(new String[]{symbol}, A_TYPE);
-
-                } else { // else - is a symbol
-                    if (!symbolTable.contains(symbol)) {
-                        symbolTable.add(symbol, n);
-                        lineOutput = code.translator(new String[]{n.toString()}, A_TYPE);
-                        n++;
-                    } else {
-                        lineOutput = code.translator(new String[]{symbolTable.get(symbol).toString()}, A_TYPE);
-                    }
+        if (type == A_TYPE) {
+            if (fileParser.isAaNumber(symbol)) { // checks if A instruction in @INTEGER
+                lineOutput = code.translator(new String[]{symbol}, A_TYPE);
 
+            } else { // else - is a symbol
+                if (!symbolTable.contains(symbol)) {
+                    symbolTable.add(symbol, n);
+                    lineOutput = code.translator(new String[]{n.toString()}, A_TYPE);
+                    n++;
+                } else {
+                    lineOutput = code.translator(new String[]{symbolTable.get(symbol).toString()}, A_TYPE);
                 }
-            } else if (type == C_TYPE) {
 
-                String[] cArray = {fileParser.getDest(), fileParser.getComp(), fileParser.getJump()};
-                lineOutput = code.translator(cArray, C_TYPE);
+            }
+        } else if (type == C_TYPE) {
 
+            String[] cArray = {fileParser.getDest(), fileParser.getComp(), fileParser.getJump()};
+            lineOutput = code.translator(cArray, C_TYPE);
 
-            } else {
-                line = fileParser.readLine();
-                continue;
-            }
-            out.println(lineOutput);
-            line = fileParser.readLine();
+
+        } else {
+            return;
         }
-        fileParser.close();
-        out.close();
+        out.println(lineOutput);
     }
 }
 
@@ -60,11 +60,14 @@ public class Code {
                 "1110001110");
         put("A-1", "1110110010");
         put("D+A", "1110000010");
+        put("A+D", "1110000010");
         put("D-A", "1110010011");
         put("A-D",
                 "1110000111");
         put("D&A", "1110000000");
+        put("A&D", "1110000000");
         put("D|A", "1110010101");
+        put("A|D", "1110010101");
         put("M", "1111110000");
         put("!M",
                 "1111110001");
@@ -73,11 +76,14 @@ public class Code {
         put("M-1", "1111110010");
         put("D+M",
                 "1111000010");
+        put("M+D", "1111000010");
         put("D-M", "1111010011");
         put("M-D", "1111000111");
         put("D&M", "1111000000");
+        put("M&D", "1111000000");
         put("D|M",
                 "1111010101");
+        put("M|D", "1111010101");
     }};
 
     private Hashtable<String, String> compShiftTable = new Hashtable<String, String>() {{
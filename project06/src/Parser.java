@@ -1,6 +1,7 @@
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,6 +45,7 @@ public class Parser {
     private static final int A_TYPE = 0;
     private static final int C_TYPE = 1;
     private static final int L_TYPE = 2;
+    private static final int NO_TYPE = -1; // empty lines and comments
     private static final String EMPTY_STR = "";
     public Code code;
     /***************************
@@ -51,7 +53,7 @@ public class Parser {
      ***************************/
     private BufferedReader reader;
     private String lineSymbol = null;
-    private int instructionType = -1;
+    private int instructionType = NO_TYPE;
     private String dest = EMPTY_STR, comp = EMPTY_STR, jump = EMPTY_STR;
 
 
@@ -66,6 +68,17 @@ public class Parser {
         code = new Code();
     }
 
+    /**
+     * A constructor of Parser object that reads from a stream, for example assembly code that is still
+     * written by the vm translator
+     *
+     * @param input - Reader of the input text
+     */
+    public Parser(Reader input) {
+        reader = new BufferedReader(input);
+        code = new Code();
+    }
+
     /********************************
      * Getters
      **************************/
@@ -157,6 +170,9 @@ public class Parser {
         } else if (Linsruction.matches()) {
             lineSymbol = Linsruction.group(LABEL_GROUP);
             instructionType = L_TYPE;
+        } else {
+            lineSymbol = null;
+            instructionType = NO_TYPE; // not the type of the previous line
         }
     }
 }
@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * this class represent the call graph of a whole vm program. it is built by a pre-pass over all the
+ * vm sources, and is used by VMtranslator to translate only the functions that are reachable from
+ * Sys.init, to find the small leaf functions that are inlined at their call sites, and to allocate the
+ * static variables that the reachable functions use.
+ */
+public class CallGraph {
+
+    /*********************** Constants **********************/
+    private static final String ENTRY_FUNCTION = "Sys.init";
+    private static final int UNKNOWN_ARG_COUNT = -1;
+    private static final String STATIC = "static";
+
+    /*********************** Data Members ******************/
+    private final Map<String, Set<String>> callees = new HashMap<>();
+    private final Set<String> reachable = new HashSet<>();
+    private final Map<String, InlineFunction> inlineFunctions = new HashMap<>();
+    private final Map<String, Integer> argCounts = new HashMap<>();
+    private final Map<String, int[]> functionStatics = new HashMap<>(); // accesses by static index
+    private final Map<String, String> functionFiles = new HashMap<>();
+    private final Map<String, int[]> fileStatics = new HashMap<>(); // accesses outside of functions
+    private final int maxInlineSize;
+
+
+    /**
+     * Constructor of class, reads all the sources and computes the functions reachable from Sys.init,
+     * without inlining
+     *
+     * @param sources all the vm sources of the program
+     * @throws IOException
+     */
+    public CallGraph(List<VmSource> sources) throws IOException {
+        this(sources, 0);
+    }
+
+    /**
+     * Constructor of class, reads all the sources and computes the functions reachable from Sys.init
+     *
+     * @param sources       all the vm sources of the program
+     * @param maxInlineSize the maximal number of commends of an inlined function, 0 for no inlining
+     * @throws IOException
+     */
+    public CallGraph(List<VmSource> sources, int maxInlineSize) throws IOException {
+        this(maxInlineSize);
+        for (VmSource source : sources) {
+            add(source);
+        }
+        markReachable();
+    }
+
+    /**
+     * Constructor of an empty graph, that is built one source at a time by add(), for sources that
+     * arrive while the graph is built. markReachable() must be called after the last source.
+     *
+     * @param maxInlineSize the maximal number of commends of an inlined function, 0 for no inlining
+     */
+    CallGraph(int maxInlineSize) {
+        this.maxInlineSize = maxInlineSize;
+    }
+
+    /**
+     * reads a single vm source and adds its functions and their 'call' commends to the graph
+     *
+     * @param source - the vm source
+     * @throws IOException
+     */
+    void add(VmSource source) throws IOException {
+        Parser fileParser = source.openParser();
+        String fileName = source.getName();
+        Set<String> currentCallees = null;
+        String currentFunction = null;
+        InlineFunction currentBody = null;
+        int[] currentStatics = fileStatics.computeIfAbsent(fileName, name -> new int[0]);
+
+        while (fileParser.hasMoreCommends()) {
+            fileParser.lineAnalizer(fileParser.adanvce());
+            int commendType = fileParser.getCommendType();
+
+            if (commendType == Parser.C_FUNC) {
+                addInlineFunction(currentFunction, currentBody);
+                addStatics(currentFunction, fileName, currentStatics);
+                currentFunction = fileParser.getArg1();
+                currentStatics = new int[0];
+                currentCallees = callees.computeIfAbsent(currentFunction, name -> new HashSet<>());
+                boolean isCandidate = maxInlineSize > 0 && fileParser.getArg2() == 0
+                        && !currentFunction.equals(ENTRY_FUNCTION);
+                currentBody = isCandidate ? new InlineFunction(fileName, maxInlineSize) : null;
+                continue;
+
+            } else if ((commendType == Parser.C_PUSH || commendType == Parser.C_POP)
+                    && fileParser.getArg1().equals(STATIC)) {
+                int index = fileParser.getArg2();
+                if (index >= currentStatics.length) {
+                    currentStatics = Arrays.copyOf(currentStatics, index + 1);
+                }
+                currentStatics[index]++;
+
+            } else if (commendType == Parser.C_CALL) {
+                argCounts.merge(fileParser.getArg1(), fileParser.getArg2(),
+                        (count, other) -> count.equals(other) ? count : UNKNOWN_ARG_COUNT);
+                if (currentCallees != null) {
+                    currentCallees.add(fileParser.getArg1());
+                }
+            }
+            if (currentBody != null) {
+                currentBody.add(commendType, fileParser.getArg1(), fileParser.getArg2());
+            }
+        }
+        addInlineFunction(currentFunction, currentBody);
+        addStatics(currentFunction, fileName, currentStatics);
+        fileParser.close();
+    }
+
+    /**
+     * keeps the static accesses of a function that was read
+     *
+     * @param functionName - name of the function, or null for commends outside of functions
+     * @param fileName     - name of the file of the function
+     * @param statics      - number of accesses to each static index
+     */
+    private void addStatics(String functionName, String fileName, int[] statics) {
+        if (functionName == null) {
+            fileStatics.put(fileName, statics);
+        } else {
+            functionStatics.put(functionName, statics);
+            functionFiles.put(functionName, fileName);
+        }
+    }
+
+    /**
+     * keeps the body of a function that was read, if it can be inlined
+     *
+     * @param functionName - name of the function
+     * @param body         - the body of the function, or null if it is not a candidate
+     */
+    private void addInlineFunction(String functionName, InlineFunction body) {
+        if (body != null && body.isInlinable()) {
+            inlineFunctions.put(functionName, body);
+        }
+    }
+
+    /**
+     * walks the graph from Sys.init and marks every function it can call, directly or not.
+     */
+    void markReachable() {
+        if (!callees.containsKey(ENTRY_FUNCTION)) {
+            return;
+        }
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.push(ENTRY_FUNCTION);
+        reachable.add(ENTRY_FUNCTION);
+
+        while (!toVisit.isEmpty()) {
+            Set<String> calledFunctions = callees.get(toVisit.pop());
+            if (calledFunctions == null) {
+                continue; // called but not defined in the input files
+            }
+            for (String callee : calledFunctions) {
+                if (reachable.add(callee)) {
+                    toVisit.push(callee);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names of the functions that are called, or are Sys.init, but are not defined in any of
+     * the sources, in order
+     */
+    public Set<String> getUndefinedFunctions() {
+        Set<String> undefined = new TreeSet<>(argCounts.keySet());
+        undefined.add(ENTRY_FUNCTION);
+        undefined.removeAll(callees.keySet());
+        return undefined;
+    }
+
+    /**
+     * checks if a function should be translated. when the program has no Sys.init there is no entry
+     * point to start from, so all functions are kept. otherwise inlined functions are never called,
+     * so they are dropped as well.
+     *
+     * @param functionName name of the function
+     * @return true if the function may be called when the program runs
+     */
+    public boolean isReachable(String functionName) {
+        return reachable.isEmpty() ||
+                (reachable.contains(functionName) && !inlineFunctions.containsKey(functionName));
+    }
+
+    /**
+     * allocates RAM addresses to the static variables used by the functions that may run, including
+     * inlined ones.
+     *
+     * @return the static segment of the program
+     * @throws IOException if the statics overflow into the stack
+     */
+    public StaticSegment allocateStatics() throws IOException {
+        Map<String, int[]> accessCounts = new HashMap<>();
+        for (Map.Entry<String, int[]> file : fileStatics.entrySet()) {
+            accessCounts.put(file.getKey(), file.getValue().clone());
+        }
+        for (Map.Entry<String, int[]> function : functionStatics.entrySet()) {
+            if (!reachable.isEmpty() && !reachable.contains(function.getKey())) {
+                continue;
+            }
+            int[] statics = function.getValue();
+            int[] counts = accessCounts.get(functionFiles.get(function.getKey()));
+            if (counts.length < statics.length) {
+                counts = Arrays.copyOf(counts, statics.length);
+                accessCounts.put(functionFiles.get(function.getKey()), counts);
+            }
+            for (int index = 0; index < statics.length; index++) {
+                counts[index] += statics[index];
+            }
+        }
+        return new StaticSegment(accessCounts);
+    }
+
+    /**
+     * @param functionName name of a function
+     * @return the number of arguments all the calls to the function pass, or -1 if it is not called,
+     * or called with different numbers of arguments
+     */
+    public int getArgCount(String functionName) {
+        if (functionName.equals(ENTRY_FUNCTION)) {
+            return UNKNOWN_ARG_COUNT; // also called by the bootstrap code
+        }
+        return argCounts.getOrDefault(functionName, UNKNOWN_ARG_COUNT);
+    }
+
+    /**
+     * @param functionName name of a called function
+     * @return the body to translate instead of calling the function, or null if it is not inlined
+     */
+    public InlineFunction getInlineFunction(String functionName) {
+        return inlineFunctions.get(functionName);
+    }
+
+
+}
@@ -1,12 +1,17 @@
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.stream.IntStream;
+import java.nio.file.StandardOpenOption;
 
 /**
  * CodeWriter is the translation engine of VMtranslator.
+ * all of its state belongs to the instance, so different CodeWriters may translate on different
+ * threads at the same time, but a single CodeWriter must be used by one thread only.
+ * the assembly code is appended straight into an OutputBuffer: constant code is encoded once, and
+ * names and numbers are appended piece by piece, so no String is built per VM commend.
  */
 public class CodeWriter {
 
@@ -15,6 +20,7 @@ public class CodeWriter {
     private static final String INPUT_FILE_SUFFIX = ".vm";
     private static final String OUTPUT_FILE_SUFFIX = ".asm";
     private static final int INT_CONST_UPPER_BOUND = 32768;
+    private static final int C_ARITHMETIC = 1;
     private static final int C_PUSH = 2;
     private static final int C_POP = 3;
     private static final String SUB_COMMAND = "sub";
@@ -46,7 +52,19 @@ public class CodeWriter {
     private static final String SP_LAST_CURR = "@SP\n" + "A=M-1\n"; // takes SP to last value
     private static final String COMMENT_PREFIX = "// ";
     private static final int PRINT_COMMEND = 1;
-    private static final String CONDITION_COMMEND_PARTIAL =
+    private static final String PUSH_STR = "push ";
+    private static final String POP_STR = "pop ";
+    private static final String CONDITION_LABEL = "$CONDITION_";
+    private static final String CHECK_LABEL = "$CHECK_";
+    private static final String PUSH_LABEL = "$PUSH_";
+    private static final String IS_TRUE_SUFFIX = "_IS_TRUE";
+    private static final String IS_FALSE_SUFFIX = "_IS_FALSE";
+    private static final String FIRST_SUFFIX = "_FIRST";
+    private static final String RES_SUFFIX = "_RES";
+    private static final String RETURN_LABEL = "ret.";
+    private static final String BOOTSTRAP_SCOPE = "Bootstrap";
+    private static final String ENTRY_FUNCTION = "Sys.init";
+    private static final byte[] CONDITION_COMMEND_PARTIAL = OutputBuffer.ascii(
             POP_TO_D + // D = Y
                     "@R13\n" +
                     "M=D\n" + // R13 = y
@@ -69,8 +87,8 @@ public class CodeWriter {
                     "@R14\n" +
                     "M=D\n" + // R14 = x
                     "@R13\n" +
-                    "D=M\n";
-    private static final String EQ_COMMEND_IN_ASSAMBLY_PARTIAL =
+                    "D=M\n");
+    private static final byte[] EQ_COMMEND_IN_ASSAMBLY_PARTIAL = OutputBuffer.ascii(
             POP_TO_D +
                     "@R13\n" +
                     "M=D\n" +
@@ -83,62 +101,316 @@ public class CodeWriter {
                     "M=M&D\n" +
                     "D=!M\n" +
                     "@R13\n" +
-                    "MD=M&D\n";
-
-
-    private static final String BOOTSTRAP_CODE_PARTIAL =
-            "Sys.init\n" +
-                    "@256\n" +
+                    "MD=M&D\n");
+    private static final byte[] CONDITION_EQUAL_CHECK = OutputBuffer.ascii(
+            "D; JEQ\n"); // if y XOR x == 0, than x == y, than False
+    private static final byte[] CONDITION_NO_OVERFLOW = OutputBuffer.ascii(
+            "D;JLT\n" + // if x XOR y < 0, than sign[y] != sign[x], than jump
+                    "@R14\n" + // no overflow
+                    "D=M\n" + // D = x
+                    "@R15\n" +
+                    "D=D-M\n"); // D = R15 ,R15 = x-y
+    private static final byte[] JUMP = OutputBuffer.ascii("0;JMP\n");
+    private static final byte[] X_TO_D = OutputBuffer.ascii(
+            "@R14\n" + // R14 = x
+                    "D=M\n"); // D = x
+    private static final byte[] TRUE_TO_D = OutputBuffer.ascii("@0\n" + "D=!A\n");
+    private static final byte[] FALSE_TO_D = OutputBuffer.ascii("@0\n" + "D=A\n");
+    private static final byte[] JLT = OutputBuffer.ascii("D;JLT\n");
+    private static final byte[] JGT = OutputBuffer.ascii("D;JGT\n");
+    private static final byte[] JGE = OutputBuffer.ascii("D;JGE\n");
+    private static final byte[] JEQ = OutputBuffer.ascii("D;JEQ\n");
+    private static final byte[] JNE = OutputBuffer.ascii("D;JNE\n");
+
+
+    private static final byte[] BOOTSTRAP_CODE_PARTIAL = OutputBuffer.ascii(
+            "@256\n" +
                     "D=A\n" +
                     "@SP\n" +
-                    "M=D\n";
+                    "M=D\n");
     /**************************** Arithmetic Commends *******************************/
     // all binary operation (+,-,and,or)
-    private static final String ADD_COMMEND_IN_ASSAMBLY = POP_TO_D + SP_LAST_CURR + "M=M+D\n";
-    private static final String SUB_COMMEND_IN_ASSAMBLY = POP_TO_D + SP_LAST_CURR + "M=M-D\n";
-    private static final String AND_COMMEND_IN_ASSAMBLY = POP_TO_D + SP_LAST_CURR + "M=M&D\n";
-    private static final String OR_COMMEND_IN_ASSAMBLY = POP_TO_D + SP_LAST_CURR + "M=M|D\n";
+    private static final byte[] ADD_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(POP_TO_D + SP_LAST_CURR + "M=M+D\n");
+    private static final byte[] SUB_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(POP_TO_D + SP_LAST_CURR + "M=M-D\n");
+    private static final byte[] AND_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(POP_TO_D + SP_LAST_CURR + "M=M&D\n");
+    private static final byte[] OR_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(POP_TO_D + SP_LAST_CURR + "M=M|D\n");
     // all unary operations (not x, -x)
-    private static final String NEG_COMMEND_IN_ASSAMBLY = SP_LAST_CURR + "M=-M\n";
-    private static final String NOT_COMMEND_IN_ASSAMBLY = SP_LAST_CURR + "M=!M\n";
+    private static final byte[] NEG_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(SP_LAST_CURR + "M=-M\n");
+    private static final byte[] NOT_COMMEND_IN_ASSAMBLY = OutputBuffer.ascii(SP_LAST_CURR + "M=!M\n");
     /************************************* Push&Pop Commends ***********************/
 
 
-    private static final String POP_THIS_IN_ASSAMBLY =
+    private static final byte[] POP_THIS_IN_ASSAMBLY = OutputBuffer.ascii(
             POP_TO_D +
                     "@" + THIS_POINTER + "\n" +
-                    "M=D\n";
-    private static final String POP_THAT_IN_ASSAMBLY =
+                    "M=D\n");
+    private static final byte[] POP_THAT_IN_ASSAMBLY = OutputBuffer.ascii(
             POP_TO_D +
                     "@" + THAT_POINTER + "\n" +
-                    "M=D\n";
-    private static final String PUSH_THIS_IN_ASSAMBLY =
+                    "M=D\n");
+    private static final byte[] PUSH_THIS_IN_ASSAMBLY = OutputBuffer.ascii(
             "@" + THIS_POINTER + "\n" +
                     "D=M\n" +
-                    PUSH_FROM_D;
-    private static final String PUSH_THAT_IN_ASSAMBLY =
+                    PUSH_FROM_D);
+    private static final byte[] PUSH_THAT_IN_ASSAMBLY = OutputBuffer.ascii(
             "@" + THAT_POINTER + "\n" +
                     "D=M\n" +
-                    PUSH_FROM_D;
-    private static Integer currentCondition = 0;
-    protected String fileName;
+                    PUSH_FROM_D);
+    private static final byte[] POP_TO_D_IN_ASSAMBLY = OutputBuffer.ascii(POP_TO_D);
+    private static final byte[] PUSH_FROM_D_IN_ASSAMBLY = OutputBuffer.ascii(PUSH_FROM_D);
+    private static final byte[] D_TO_M = OutputBuffer.ascii("M=D\n");
+    private static final byte[] INDEX_TO_D = OutputBuffer.ascii("D=A\n");
+    private static final byte[] SEG_ADDRESS_TO_R13 = OutputBuffer.ascii(
+            "A=M\n" +
+                    "D=A+D\n" +
+                    "@R13\n" +
+                    "M=D\n" +
+                    POP_TO_D +
+                    "@R13\n" +
+                    "A=M\n" +
+                    "M=D\n");
+    private static final byte[] SEG_VALUE_TO_STACK = OutputBuffer.ascii(
+            "A=M\n" +
+                    "A=A+D\n" +
+                    "D=M\n" +
+                    PUSH_FROM_D);
+    private static final byte[] VALUE_TO_STACK = OutputBuffer.ascii("D=M\n" + PUSH_FROM_D);
+    private static final byte[] CONSTANT_TO_STACK = OutputBuffer.ascii("D=A\n" + PUSH_FROM_D);
+    /************************************* Function Commends ***********************/
+    private static final byte[] SAVE_CALLER_FRAME = OutputBuffer.ascii(
+            "D=A\n" +
+                    PUSH_FROM_D +
+                    "@LCL\n" +
+                    "D=M\n" +
+                    PUSH_FROM_D +
+                    "@ARG\n" +
+                    "D=M\n" +
+                    PUSH_FROM_D +
+                    "@THIS\n" +
+                    "D=M\n" +
+                    PUSH_FROM_D +
+                    "@THAT\n" +
+                    "D=M\n" +
+                    PUSH_FROM_D +
+                    "@SP\n" +
+                    "D=M\n" +
+                    "@5\n" +
+                    "D=D-A\n");
+    private static final byte[] SET_CALLEE_FRAME = OutputBuffer.ascii(
+            "D=D-A\n" +
+                    "@ARG\n" +
+                    "M=D\n" +
+                    "@SP\n" +
+                    "D=M\n" +
+                    "@LCL\n" +
+                    "M=D\n");
+    private static final byte[] CALL_JUMP = OutputBuffer.ascii("0; JMP\n");
+    private static final byte[] LABEL_COMMENT = OutputBuffer.ascii(COMMENT_PREFIX + "label ");
+    private static final byte[] RETURN_IN_ASSAMBLY = OutputBuffer.ascii(
+            "@LCL\n" +
+                    "D=M\n" +
+                    "@R13\n" +
+                    "M=D\n" +
+                    frameD(5) +
+                    "@R14\n" +
+                    "M=D\n" +
+                    POP_TO_D +
+                    "@ARG\n" +
+                    "A=M\n" +
+                    "M=D\n" +
+                    "@ARG\n" +
+                    "D=M\n" +
+                    "@SP\n" +
+                    "M=D+1\n" +
+                    frameD(1) +
+                    "@THAT\n" +
+                    "M=D\n" +
+                    frameD(2) +
+                    "@THIS\n" +
+                    "M=D\n" +
+                    frameD(3) +
+                    "@ARG\n" +
+                    "M=D\n" +
+                    frameD(4) +
+                    "@LCL\n" +
+                    "M=D\n" +
+                    "@R14\n" +
+                    "A=M\n" +
+                    "0;JMP\n");
+    // tail calls: the callee takes the frame of the caller
+    private static final byte[] CALLER_FRAME_ABOVE_STACK = OutputBuffer.ascii(
+            "@LCL\n" + "D=M\n" + "@5\n" + "A=D-A\n" + "D=M\n" + // return address
+                    "@SP\n" + "A=M\n" + "M=D\n" +
+                    "@LCL\n" + "D=M\n" + "@4\n" + "A=D-A\n" + "D=M\n" + // LCL
+                    "@SP\n" + "A=M+1\n" + "M=D\n" +
+                    "@LCL\n" + "D=M\n" + "@3\n" + "A=D-A\n" + "D=M\n" + // ARG
+                    "@SP\n" + "A=M+1\n" + "A=A+1\n" + "M=D\n" +
+                    "@LCL\n" + "D=M\n" + "@2\n" + "A=D-A\n" + "D=M\n" + // THIS
+                    "@SP\n" + "A=M+1\n" + "A=A+1\n" + "A=A+1\n" + "M=D\n" +
+                    "@LCL\n" + "A=M-1\n" + "D=M\n" + // THAT
+                    "@SP\n" + "A=M+1\n" + "A=A+1\n" + "A=A+1\n" + "A=A+1\n" + "M=D\n");
+    private static final byte[] SET_TAIL_COPY = OutputBuffer.ascii(
+            "D=A\n" +
+                    "@SP\n" +
+                    "D=M-D\n" +
+                    "@R13\n" +
+                    "M=D\n" + // R13 = first argument of the callee
+                    "@ARG\n" +
+                    "D=M\n" +
+                    "@R14\n" +
+                    "M=D\n"); // R14 = first argument of the caller
+    private static final byte[] TAIL_COPY_WORD = OutputBuffer.ascii(
+            "@R13\n" +
+                    "M=M+1\n" +
+                    "A=M-1\n" +
+                    "D=M\n" +
+                    "@R14\n" +
+                    "M=M+1\n" +
+                    "A=M-1\n" +
+                    "M=D\n");
+    private static final byte[] SET_TAIL_CALLEE_FRAME = OutputBuffer.ascii(
+            "@R14\n" +
+                    "D=M\n" +
+                    "@LCL\n" +
+                    "M=D\n" +
+                    "@SP\n" +
+                    "M=D\n");
+    private static final byte[] SP_TO_LCL = OutputBuffer.ascii(
+            "@LCL\n" +
+                    "D=M\n" +
+                    "@SP\n" +
+                    "M=D\n");
+    private static final byte[] TAIL_CALL_COMMENT = OutputBuffer.ascii(COMMENT_PREFIX + "tail call ");
+    // zeroing the locals of a function: unrolled for a few locals, in a loop for many
+    private static final int MAX_UNROLLED_LOCALS = 8;
+    private static final String LOCALS_LOOP_LABEL = "$$ZERO_LOCALS"; // vm labels can not start with '$'
+    private static final byte[] FIRST_LOCAL_TO_ZERO = OutputBuffer.ascii(
+            "@SP\n" +
+                    "A=M\n" +
+                    "M=0\n");
+    private static final byte[] NEXT_LOCAL_TO_ZERO = OutputBuffer.ascii(
+            "A=A+1\n" +
+                    "M=0\n");
+    private static final byte[] SP_AFTER_LOCALS = OutputBuffer.ascii(
+            "D=A+1\n" +
+                    "@SP\n" +
+                    "M=D\n");
+    private static final byte[] LOCAL_TO_ZERO_IN_LOOP = OutputBuffer.ascii(
+            "@SP\n" +
+                    "M=M+1\n" +
+                    "A=M-1\n" +
+                    "M=0\n" +
+                    "D=D-1\n");
+    // inlined leaf functions
+    private static final byte[] INLINE_COMMENT = OutputBuffer.ascii(COMMENT_PREFIX + "inline call ");
+    private static final byte[] STACK_VALUE_TO_D = OutputBuffer.ascii(
+            "@SP\n" +
+                    "A=M-D\n" +
+                    "D=M\n"); // D = the value D places below the top of the stack
+    private static final byte[] RESULT_TO_R13 = OutputBuffer.ascii(
+            POP_TO_D +
+                    "@R13\n" +
+                    "M=D\n");
+    private static final byte[] RESULT_OVER_ARGUMENT = OutputBuffer.ascii(POP_TO_D + SP_LAST_CURR + "M=D\n");
+    private static final byte[] DROP_D_VALUES = OutputBuffer.ascii(
+            "D=A\n" +
+                    "@SP\n" +
+                    "M=M-D\n");
+    private static final byte[] R13_TO_STACK = OutputBuffer.ascii("@R13\n" + "D=M\n" + PUSH_FROM_D);
     /******************************** Data Members **********8********************/
-    private PrintWriter writer;
-    private int callsCount = 1;
+    private final OutputBuffer out;
+    private boolean withComments = true;
+    private StaticSegment staticSegment = null;
+    private String fileName;
+    private int currentCondition = 0;
+    private int callsCount = 0;
     private String functionName = null;
 
 
     public CodeWriter(File inputFile) throws IOException {
+        this(FileChannel.open(outputPath(inputFile, OUTPUT_FILE_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+
+
+    }
+
+    /**
+     * Constructor of a CodeWriter that writes into a given channel, which may be a file or memory.
+     *
+     * @param output - the channel to write the assembly code into
+     */
+    public CodeWriter(WritableByteChannel output) {
+        out = new OutputBuffer(output);
+    }
+
+    /**
+     * Constructor of a CodeWriter that writes into a given buffer, for example the buffer of a single
+     * translated file.
+     *
+     * @param output - the buffer to write the assembly code into
+     */
+    public CodeWriter(OutputBuffer output) {
+        out = output;
+    }
+
 
+    /**
+     * returns the path of an output file of a translation: Xxx.suffix next to an input file Xxx.vm, or
+     * Xxx/Xxx.suffix inside an input directory Xxx.
+     *
+     * @param inputFile - input file or directory
+     * @param suffix    - suffix of the output file
+     * @return path of the output file
+     */
+    static Path outputPath(File inputFile, String suffix) {
         if (inputFile.isDirectory()) {
-            writer = new PrintWriter(Files.newBufferedWriter(Paths.get(inputFile.toPath().toAbsolutePath().resolve(inputFile.getName() + ".asm").toString())));
-        } else {
-            writer = new PrintWriter(Files.newBufferedWriter(Paths.get(inputFile.getPath().replace(INPUT_FILE_SUFFIX, OUTPUT_FILE_SUFFIX))));
+            return inputFile.toPath().toAbsolutePath().resolve(inputFile.getName() + suffix);
         }
+        return Paths.get(inputFile.getPath().replace(INPUT_FILE_SUFFIX, suffix));
+    }
 
+    /**
+     * sets if a comment is written before the code of each VM commend. without comments the output
+     * holds only instructions and labels.
+     *
+     * @param withComments true to write comments
+     */
+    public void setComments(boolean withComments) {
+        this.withComments = withComments;
+    }
 
+    /**
+     * sets the RAM addresses of the static variables of the program.
+     *
+     * @param staticSegment the allocated statics, or null to leave them to the assembler
+     */
+    public void setStaticSegment(StaticSegment staticSegment) {
+        this.staticSegment = staticSegment;
     }
 
+    /**
+     * @return the number of bytes written so far into an in memory buffer
+     */
+    int position() {
+        return out.size();
+    }
+
+    /**
+     * @param position a position returned by position()
+     * @return the number of instructions written into an in memory buffer since that position
+     */
+    int instructionsSince(int position) {
+        return out.countInstructions(position);
+    }
+
+    /**
+     * writes all the buffered code to the channel of the writer, and keeps the channel open.
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        out.flush();
+    }
 
     /**
      * closes writer - stops the CodeWriter.
@@ -146,7 +418,7 @@ public class CodeWriter {
      * @throws IOException
      */
     void close() throws IOException {
-        writer.close();
+        out.close();
     }
 
 
@@ -155,46 +427,46 @@ public class CodeWriter {
      *
      * @param command a string of the current commend that is read/
      */
-    public void writeArithmetic(String command) {
+    public void writeArithmetic(String command) throws IOException {
         printCommendOrComment(command, PRINT_COMMENT);
         switch (command) {
             case ADD_COMMAND:
-                printCommendOrComment(ADD_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(ADD_COMMEND_IN_ASSAMBLY);
 
                 break;
             case SUB_COMMAND:
-                printCommendOrComment(SUB_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(SUB_COMMEND_IN_ASSAMBLY);
 
                 break;
             case AND_COMMAND:
-                printCommendOrComment(AND_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(AND_COMMEND_IN_ASSAMBLY);
 
                 break;
             case OR_COMMAND:
-                printCommendOrComment(OR_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(OR_COMMEND_IN_ASSAMBLY);
 
                 break;
             case NOT_COMMAND:
-                printCommendOrComment(NOT_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(NOT_COMMEND_IN_ASSAMBLY);
 
                 break;
             case NEG_COMMAND:
-                printCommendOrComment(NEG_COMMEND_IN_ASSAMBLY, PRINT_COMMEND);
+                out.append(NEG_COMMEND_IN_ASSAMBLY);
 
                 break;
             case GT_COMMAND:
-                printCommendOrComment(getConditionalCommend(currentCondition, 1), PRINT_COMMEND);
+                writeConditionalCommend(currentCondition, 1);
                 currentCondition++;
 
                 break;
             case LT_COMMAND:
-                printCommendOrComment(getConditionalCommend(currentCondition, 0), PRINT_COMMEND);
+                writeConditionalCommend(currentCondition, 0);
                 currentCondition++;
 
 
                 break;
             case EQ_COMMAND:
-                printCommendOrComment(getEqCommand(currentCondition), PRINT_COMMEND);
+                writeEqCommand(currentCondition);
                 currentCondition++;
                 break;
         }
@@ -209,216 +481,223 @@ public class CodeWriter {
      * @param segment     - the type of one of 8 segments.
      * @param index       - memory address in the given seg. type.
      */
-    public void writePushPop(int commandType, String segment, int index) {
+    public void writePushPop(int commandType, String segment, int index) throws IOException {
         if (commandType == C_PUSH) {
-            writePush(segment, index);
+            writePush(segment, index, fileName);
         } else if (commandType == C_POP) {
-            writePop(segment, index);
+            writePop(segment, index, fileName);
         }
     }
 
     /**
      * write all pop commends/
      *
-     * @param segment - type of segment
-     * @param idx     -  memory address in the given seg. type.
+     * @param segment     - type of segment
+     * @param idx         -  memory address in the given seg. type.
+     * @param staticScope - name of the file the static segment belongs to
      */
-    private void writePop(String segment, int idx) {
-        printCommendOrComment("pop " + segment + " " + idx, PRINT_COMMENT);
+    private void writePop(String segment, int idx, String staticScope) throws IOException {
+        if (withComments) {
+            out.append(COMMENT_PREFIX).append(POP_STR).append(segment).append(' ').append(idx).append('\n');
+        }
         switch (segment) {
             case LOCAL:
-                printCommendOrComment(popSeg(idx, LOCAL_POINTER), PRINT_COMMEND);
+                popSeg(idx, LOCAL_POINTER);
                 break;
             case ARGUMENT:
-                printCommendOrComment(popSeg(idx, ARGUMENT_POINTER), PRINT_COMMEND);
+                popSeg(idx, ARGUMENT_POINTER);
                 break;
             case THIS:
-                printCommendOrComment(popSeg(idx, THIS_POINTER), PRINT_COMMEND);
+                popSeg(idx, THIS_POINTER);
                 break;
             case THAT:
-                printCommendOrComment(popSeg(idx, THAT_POINTER), PRINT_COMMEND);
+                popSeg(idx, THAT_POINTER);
                 break;
             case POINTER:
                 if (idx == 0) {
-                    printCommendOrComment(POP_THIS_IN_ASSAMBLY, PRINT_COMMEND);
+                    out.append(POP_THIS_IN_ASSAMBLY);
 
                 } else if (idx == 1) {
-                    printCommendOrComment(POP_THAT_IN_ASSAMBLY, PRINT_COMMEND);
+                    out.append(POP_THAT_IN_ASSAMBLY);
                 }
                 break;
             case TEMP:
-                printCommendOrComment(popTemp(idx), PRINT_COMMEND);
+                popTemp(idx);
                 break;
             case STATIC:
-                printCommendOrComment(popStatic(fileName, idx), PRINT_COMMEND);
+                popStatic(staticScope, idx);
                 break;
 
 
         }
     }
 
-    private void writePush(String segment, int idx) {
-        printCommendOrComment("push " + segment + " " + idx, PRINT_COMMENT);
+    private void writePush(String segment, int idx, String staticScope) throws IOException {
+        if (withComments) {
+            out.append(COMMENT_PREFIX).append(PUSH_STR).append(segment).append(' ').append(idx).append('\n');
+        }
         switch (segment) {
             case LOCAL:
-                printCommendOrComment(pushSeg(idx, LOCAL_POINTER), PRINT_COMMEND);
+                pushSeg(idx, LOCAL_POINTER);
                 break;
             case ARGUMENT:
-                printCommendOrComment(pushSeg(idx, ARGUMENT_POINTER), PRINT_COMMEND);
+                pushSeg(idx, ARGUMENT_POINTER);
                 break;
             case THIS:
-                printCommendOrComment(pushSeg(idx, THIS_POINTER), PRINT_COMMEND);
+                pushSeg(idx, THIS_POINTER);
                 break;
             case THAT:
-                printCommendOrComment(pushSeg(idx, THAT_POINTER), PRINT_COMMEND);
+                pushSeg(idx, THAT_POINTER);
                 break;
             case POINTER:
                 if (idx == 0) {
-                    printCommendOrComment(PUSH_THIS_IN_ASSAMBLY, PRINT_COMMEND);
+                    out.append(PUSH_THIS_IN_ASSAMBLY);
 
                 } else if (idx == 1) {
-                    printCommendOrComment(PUSH_THAT_IN_ASSAMBLY, PRINT_COMMEND);
+                    out.append(PUSH_THAT_IN_ASSAMBLY);
                 }
                 break;
             case TEMP:
-                printCommendOrComment(pushTemp(idx), PRINT_COMMEND);
+                pushTemp(idx);
 
                 break;
             case STATIC:
-                printCommendOrComment(pushStatic(fileName, idx), PRINT_COMMEND);
+                pushStatic(staticScope, idx);
                 break;
 
             case CONSTANT:
-                printCommendOrComment(pushConst(idx), PRINT_COMMEND);
+                pushConst(idx);
                 break;
 
         }
 
     }
 
+    /**
+     * writes an already translated assembly code, as is.
+     *
+     * @param translation assembly code translated by another CodeWriter
+     */
+    public void writeTranslation(OutputBuffer translation) throws IOException {
+        out.append(translation);
+    }
+
     /**
      * prints commend in vm lang. as a comment
      */
-    public void printCommendOrComment(String command, int printType) {
+    public void printCommendOrComment(String command, int printType) throws IOException {
         if (printType == PRINT_COMMENT) {
-            writer.println(COMMENT_PREFIX + command);
+            if (withComments) {
+                out.append(COMMENT_PREFIX).append(command).append('\n');
+            }
         } else if (printType == PRINT_COMMEND) {
-            writer.println(command);
+            out.append(command).append('\n');
         }
     }
 
     /**
-     * assamble conditinal commends (larger than, lower than) string in assembly (Hack lang.)
+     * writes a reference to one of the labels of a condition, for example @Main$CONDITION_3_IS_TRUE
+     *
+     * @param label     the kind of the label
+     * @param condition the number of the condition in the file
+     * @param suffix    the suffix of the label
+     */
+    private void conditionAddress(String label, int condition, String suffix) throws IOException {
+        out.append('@').append(fileName).append(label).append(condition).append(suffix).append('\n');
+    }
+
+    /**
+     * writes one of the labels of a condition, for example (Main$CONDITION_3_IS_TRUE)
+     *
+     * @param label     the kind of the label
+     * @param condition the number of the condition in the file
+     * @param suffix    the suffix of the label
+     */
+    private void conditionLabel(String label, int condition, String suffix) throws IOException {
+        out.append('(').append(fileName).append(label).append(condition).append(suffix).append(')').append('\n');
+    }
+
+    /**
+     * assamble conditinal commends (larger than, lower than) in assembly (Hack lang.)
      *
      * @param currentCondition - int signify the number of conditon in the file
      * @param zeroForlt        - int indicator on which condition we need to assamble the string.
-     * @return string in assembly language.
-     */
-    public String getConditionalCommend(int currentCondition, int zeroForlt) {
-        String i;
-        String j;
-
-        String condi2 =
-                "@CONDITION_" + currentCondition + "_IS_FALSE\n" +
-                        "D; JEQ\n" + // if y XOR x == 0, than x == y, than False
-                        "@CHECK_" + currentCondition + "_FIRST\n" +
-                        "D;JLT\n" + // if x XOR y < 0, than sign[y] != sign[x], than jump
-                        "@R14\n" + // no overflow
-                        "D=M\n" + // D = x
-                        "@R15\n" +
-                        "D=D-M\n" + // D = R15 ,R15 = x-y
-                        "@CONDITION_" + currentCondition + "_IS_TRUE\n";
-
-        String condi3 =
-                "@CONDITION_" + currentCondition + "_IS_FALSE\n" +
-                        "0;JMP\n" +
-                        "(CHECK_" + currentCondition + "_FIRST)\n" +
-                        "@R14\n" + // R14 = x
-                        "D=M\n" + // D = x
-                        "@CONDITION_" + currentCondition + "_IS_TRUE\n";
-
-        String condi4 =
-                "@CONDITION_" + currentCondition + "_IS_FALSE\n" +
-                        "0;JMP\n" +
-                        "(CONDITION_" + currentCondition + "_IS_TRUE)\n" +
-                        "@0\n" +
-                        "D=!A\n" + // d = true
-                        "@PUSH_" + currentCondition + "_RES\n" +
-                        "0;JMP\n" +
-                        "(CONDITION_" + currentCondition + "_IS_FALSE)\n" +
-                        "@0\n" +
-                        "D=A\n" + // d = true
-                        "(PUSH_" + currentCondition + "_RES)\n" +
-                        PUSH_FROM_D;
-
+     */
+    public void writeConditionalCommend(int currentCondition, int zeroForlt) throws IOException {
+        byte[] i;
+        byte[] j;
         if (zeroForlt == 0) {
-            i = "D;JLT\n";
+            i = JLT;
             j = i;
         } else {
-            i = "D;JGT\n";
-            j = "D;JGE\n";
+            i = JGT;
+            j = JGE;
         }
 
-        return CONDITION_COMMEND_PARTIAL + condi2 + i + condi3 + j + condi4;
-
+        out.append(CONDITION_COMMEND_PARTIAL);
+        conditionAddress(CONDITION_LABEL, currentCondition, IS_FALSE_SUFFIX);
+        out.append(CONDITION_EQUAL_CHECK);
+        conditionAddress(CHECK_LABEL, currentCondition, FIRST_SUFFIX);
+        out.append(CONDITION_NO_OVERFLOW);
+        conditionAddress(CONDITION_LABEL, currentCondition, IS_TRUE_SUFFIX);
+        out.append(i);
+
+        conditionAddress(CONDITION_LABEL, currentCondition, IS_FALSE_SUFFIX);
+        out.append(JUMP);
+        conditionLabel(CHECK_LABEL, currentCondition, FIRST_SUFFIX);
+        out.append(X_TO_D);
+        conditionAddress(CONDITION_LABEL, currentCondition, IS_TRUE_SUFFIX);
+        out.append(j);
+
+        conditionAddress(CONDITION_LABEL, currentCondition, IS_FALSE_SUFFIX);
+        out.append(JUMP);
+        conditionLabel(CONDITION_LABEL, currentCondition, IS_TRUE_SUFFIX);
+        out.append(TRUE_TO_D); // d = true
+        conditionAddress(PUSH_LABEL, currentCondition, RES_SUFFIX);
+        out.append(JUMP);
+        conditionLabel(CONDITION_LABEL, currentCondition, IS_FALSE_SUFFIX);
+        out.append(FALSE_TO_D); // d = false
+        conditionLabel(PUSH_LABEL, currentCondition, RES_SUFFIX);
+        out.append(PUSH_FROM_D_IN_ASSAMBLY);
     }
 
     /**
-     * assamble eq. to string commend in assembly.
+     * assamble eq. commend in assembly.
      *
      * @param currCondition -  int signify the number of conditon in the file
-     * @return string in assembly language.
      */
-    public String getEqCommand(int currCondition) {
-
-        String eq2 = "@CONDITION_" + currCondition + "_IS_TRUE\n" +
-                "D;JEQ\n" +
-                "@0\n" +
-                "D=A\n" +
-                "@PUSH_" + currCondition + "_RES\n" +
-                "0;JMP\n" +
-                "(CONDITION_" + currCondition + "_IS_TRUE)\n" +
-                "@0\n" +
-                "D=!A\n" +
-                "(PUSH_" + currCondition + "_RES)\n" +
-                PUSH_FROM_D;
-
-        return EQ_COMMEND_IN_ASSAMBLY_PARTIAL + eq2;
-
+    public void writeEqCommand(int currCondition) throws IOException {
+        out.append(EQ_COMMEND_IN_ASSAMBLY_PARTIAL);
+        conditionAddress(CONDITION_LABEL, currCondition, IS_TRUE_SUFFIX);
+        out.append(JEQ);
+        out.append(FALSE_TO_D);
+        conditionAddress(PUSH_LABEL, currCondition, RES_SUFFIX);
+        out.append(JUMP);
+        conditionLabel(CONDITION_LABEL, currCondition, IS_TRUE_SUFFIX);
+        out.append(TRUE_TO_D);
+        conditionLabel(PUSH_LABEL, currCondition, RES_SUFFIX);
+        out.append(PUSH_FROM_D_IN_ASSAMBLY);
     }
 
     /**
-     * assamble pop to segment to string commend in assembly.
+     * assamble pop to segment in assembly.
      *
      * @param index   - index in a specific segment
      * @param segType - the type of segment (we have 8)
-     * @return string in assembly language.
      */
-    public String popSeg(int index, String segType) {
-
-        return "@" + index + "\n" +
-                "D=A\n" +
-                "@" + segType + "\n" +
-                "A=M\n" +
-                "D=A+D\n" +
-                "@R13\n" +
-                "M=D\n" +
-                POP_TO_D +
-                "@R13\n" +
-                "A=M\n" +
-                "M=D\n";
+    public void popSeg(int index, String segType) throws IOException {
+        out.append('@').append(index).append('\n').append(INDEX_TO_D);
+        out.append('@').append(segType).append('\n').append(SEG_ADDRESS_TO_R13);
     }
 
     /**
      * pops to temp segmant
      *
      * @param index -  index in a specific segment
-     * @return string in assembly language.
      */
-    public String popTemp(int index) {
-        return POP_TO_D +
-                "@" + (TEMP_ADDRESS + index) + "\n" +
-                "M=D\n";
+    public void popTemp(int index) throws IOException {
+        out.append(POP_TO_D_IN_ASSAMBLY);
+        out.append('@').append(TEMP_ADDRESS + index).append('\n').append(D_TO_M);
     }
 
     /**
@@ -426,12 +705,11 @@ public class CodeWriter {
      *
      * @param fileName - name of current input file
      * @param index    index in that specific segment
-     * @return string in assembly language.
      */
-    public String popStatic(String fileName, int index) {
-        return POP_TO_D +
-                "@" + fileName + "." + index + "\n" +
-                "M=D\n";
+    public void popStatic(String fileName, int index) throws IOException {
+        out.append(POP_TO_D_IN_ASSAMBLY);
+        staticAddress(fileName, index);
+        out.append(D_TO_M);
     }
 
     /**
@@ -439,16 +717,10 @@ public class CodeWriter {
      *
      * @param index   index in that specific segment
      * @param segType the type of segment (we have 8)
-     * @return string in assembly language.
-     */
-    public String pushSeg(int index, String segType) {
-        return "@" + index + "\n" +
-                "D=A\n" +
-                "@" + segType + "\n" +
-                "A=M\n" +
-                "A=A+D\n" +
-                "D=M\n" +
-                PUSH_FROM_D;
+     */
+    public void pushSeg(int index, String segType) throws IOException {
+        out.append('@').append(index).append('\n').append(INDEX_TO_D);
+        out.append('@').append(segType).append('\n').append(SEG_VALUE_TO_STACK);
     }
 
     /**
@@ -456,27 +728,37 @@ public class CodeWriter {
      *
      * @param fileName name of current input file
      * @param index    index in that specific segment
-     * @return string in assembly language.
      */
-    public String pushStatic(String fileName, int index) {
-        return "@" + fileName + "." + index + "\n" +
-                "D=M\n" +
-                PUSH_FROM_D;
+    public void pushStatic(String fileName, int index) throws IOException {
+        staticAddress(fileName, index);
+        out.append(VALUE_TO_STACK);
     }
 
     /**
-     * push from Constant segment.
+     * writes the A-instruction of a static variable: its RAM address when the static segment was
+     * allocated, otherwise a File.i symbol for the assembler to allocate.
      *
-     * @param constant - int value
-     * @return string in assembly language, or null if string isnt valid according to INT_CONST_UPPER_BOUND
+     * @param fileName name of the file of the static
+     * @param index    index in that specific segment
      */
-    public String pushConst(int constant) {
-        if (constant < 0 || constant >= INT_CONST_UPPER_BOUND) {
-            return null;
+    private void staticAddress(String fileName, int index) throws IOException {
+        int address = staticSegment == null ? -1 : staticSegment.getAddress(fileName, index);
+        if (address < 0) {
+            out.append('@').append(fileName).append('.').append(index).append('\n');
         } else {
-            return "@" + constant + "\n" +
-                    "D=A\n" +
-                    PUSH_FROM_D;
+            out.append('@').append(address).append('\n');
+        }
+    }
+
+    /**
+     * push from Constant segment. nothing is written if the constant isnt valid according to
+     * INT_CONST_UPPER_BOUND
+     *
+     * @param constant - int value
+     */
+    public void pushConst(int constant) throws IOException {
+        if (constant >= 0 && constant < INT_CONST_UPPER_BOUND) {
+            out.append('@').append(constant).append('\n').append(CONSTANT_TO_STACK);
         }
 
     }
@@ -485,21 +767,27 @@ public class CodeWriter {
      * push from Temp seg.
      *
      * @param index index in that specific segment
-     * @return string in assembly language
      */
-    private String pushTemp(int index) {
-        return "@" + (TEMP_ADDRESS + index) + "\n" +
-                "D=M\n" +
-                PUSH_FROM_D;
+    private void pushTemp(int index) throws IOException {
+        out.append('@').append(TEMP_ADDRESS + index).append('\n').append(VALUE_TO_STACK);
     }
 
     /**
-     * sets current file name
+     * sets current file name, and leaves the scope of the last function of the previous file.
      *
      * @param fileName
      */
     public void setFileName(String fileName) {
         this.fileName = fileName;
+        this.functionName = null;
+        this.callsCount = 0;
+    }
+
+    /**
+     * @return the name of the file currently translated
+     */
+    public String getFileName() {
+        return fileName;
     }
 
     /**
@@ -507,7 +795,7 @@ public class CodeWriter {
      *
      * @param index - in to sub. from Frame.
      */
-    private String frameD(int index) {
+    private static String frameD(int index) {
         return "@R13\n" +
                 "D=M\n" +
                 "@" + index + "\n" +
@@ -517,119 +805,72 @@ public class CodeWriter {
     }
 
     /**
-     * returns a string of the commands for setting a call to a function
+     * writes the commands for setting a call to a function
      *
      * @param functionName name of called function
      * @param nArgs        no. of args sent to the function
-     * @return a string of the commands for setting a call to a function
+     * @param returnScope  the function the return label belongs to, or null outside of functions
+     * @param returnIndex  the number of the call in its scope
      **/
-    private String call(String functionName, int nArgs) {
-        return
-                "@" + labelName("ret." + callsCount) + "\n" +
-                        "D=A\n" +
-                        PUSH_FROM_D +
-                        "@LCL\n" +
-                        "D=M\n" +
-                        PUSH_FROM_D +
-                        "@ARG\n" +
-                        "D=M\n" +
-                        PUSH_FROM_D +
-                        "@THIS\n" +
-                        "D=M\n" +
-                        PUSH_FROM_D +
-                        "@THAT\n" +
-                        "D=M\n" +
-                        PUSH_FROM_D +
-                        "@SP\n" +
-                        "D=M\n" +
-                        "@5\n" +
-                        "D=D-A\n" +
-                        "@" + nArgs + "\n" +
-                        "D=D-A\n" +
-                        "@ARG\n" +
-                        "M=D\n" +
-                        "@SP\n" +
-                        "D=M\n" +
-                        "@LCL\n" +
-                        "M=D\n" +
-                        "@" + functionName + "\n" +
-                        "0; JMP\n" +
-                        "// label " + "ret." + callsCount + "\n" + // comment
-                        "(" + labelName("ret." + callsCount) + ")";
-
-    }
-
-    /**
-     * return a string of the label name to create a new label in assembley language
+    private void call(String functionName, int nArgs, String returnScope, int returnIndex) throws IOException {
+        out.append('@');
+        returnLabel(returnScope, returnIndex);
+        out.append('\n').append(SAVE_CALLER_FRAME);
+        out.append('@').append(nArgs).append('\n').append(SET_CALLEE_FRAME);
+        out.append('@').append(functionName).append('\n').append(CALL_JUMP);
+        if (withComments) {
+            out.append(LABEL_COMMENT).append(RETURN_LABEL).append(returnIndex).append('\n');
+        }
+        out.append('(');
+        returnLabel(returnScope, returnIndex);
+        out.append(')').append('\n');
+
+    }
+
+    /**
+     * writes the name of a return label, for example Main.main$ret.2, or Main$ret.2 outside of functions,
+     * since every file counts its calls from 1
+     *
+     * @param returnScope the function the label belongs to, or null outside of functions
+     * @param returnIndex the number of the call in its scope
+     */
+    private void returnLabel(String returnScope, int returnIndex) throws IOException {
+        out.append(returnScope != null ? returnScope : fileName).append('$');
+        out.append(RETURN_LABEL).append(returnIndex);
+    }
+
+    /**
+     * writes the label name of a label in the current function, or in the current file outside of
+     * functions
      *
      * @param labelName new label to create
-     * @return
      */
-    private String labelName(String labelName) {
-        return functionName != null ? functionName + "$" + labelName : labelName;
+    private void labelName(String labelName) throws IOException {
+        out.append(functionName != null ? functionName : fileName).append('$');
+        out.append(labelName);
 
     }
 
     /**
-     * returns a string of the commands for conditional goto in assembly
+     * writes the commands for conditional goto in assembly
      *
      * @param label The label to goto
      */
-    private String If(String label) {
-        return
-                POP_TO_D +
-                        "@" + labelName(label) + "\n" +
-                        "D;JNE\n";
+    private void If(String label) throws IOException {
+        out.append(POP_TO_D_IN_ASSAMBLY).append('@');
+        labelName(label);
+        out.append('\n').append(JNE);
     }
 
     /**
-     * returns go to commend in assembly lang.
+     * writes go to commend in assembly lang.
      *
      * @param label label to to goto/
-     * @return string goto commend in assembly lang.
-     */
-    private String goTo(String label) {
-        return
-                "@" + labelName(label) + "\n" +
-                        "0;JMP\n";
-    }
-
-    /**
-     * @return the string in assembly to return to a caller function
-     */
-    private String getReturn() {
-        return
-
-                "@LCL\n" +
-                        "D=M\n" +
-                        "@R13\n" +
-                        "M=D\n" +
-                        frameD(5) +
-                        "@R14\n" +
-                        "M=D\n" +
-                        POP_TO_D +
-                        "@ARG\n" +
-                        "A=M\n" +
-                        "M=D\n" +
-                        "@ARG\n" +
-                        "D=M\n" +
-                        "@SP\n" +
-                        "M=D+1\n" +
-                        frameD(1) +
-                        "@THAT\n" +
-                        "M=D\n" +
-                        frameD(2) +
-                        "@THIS\n" +
-                        "M=D\n" +
-                        frameD(3) +
-                        "@ARG\n" +
-                        "M=D\n" +
-                        frameD(4) +
-                        "@LCL\n" +
-                        "M=D\n" +
-                        "@R14\n" +
-                        "A=M\n" +
-                        "0;JMP\n";
+     */
+    private void goTo(String label) throws IOException {
+        out.append('@');
+        labelName(label);
+        out.append('\n').append(JUMP);
     }
 
     /**
@@ -649,9 +890,98 @@ public class CodeWriter {
      * @param functionName - the name of the function (callee)
      * @param nArgs        - number of args the function gets.
      */
-    void writeCall(String functionName, int nArgs) {
+    void writeCall(String functionName, int nArgs) throws IOException {
         callsCount++;
-        printCommendOrComment(call(functionName, nArgs), PRINT_COMMEND);
+        call(functionName, nArgs, this.functionName, callsCount);
+    }
+
+    /**
+     * writes assembly code that effects a 'Call' commend followed by a 'return' commend. the callee
+     * returns straight to the caller of the current function: the saved frame of the current function
+     * is copied above the arguments of the callee, both are copied down to the argument segment of the
+     * current function, and the callee gets that frame instead of a new one, so the stack does not grow.
+     * when both functions get the same number of arguments, as in recursion, the saved frame is
+     * already in place and only the arguments are copied.
+     *
+     * @param functionName - the name of the function (callee)
+     * @param nArgs        - number of args the function gets.
+     * @param callerArgs   - number of args the current function got, or -1 if it is not known
+     */
+    void writeTailCall(String functionName, int nArgs, int callerArgs) throws IOException {
+        if (withComments) {
+            out.append(TAIL_CALL_COMMENT).append(functionName).append(' ').append(nArgs).append('\n');
+        }
+        boolean isFrameInPlace = nArgs == callerArgs;
+        if (!isFrameInPlace) {
+            out.append(CALLER_FRAME_ABOVE_STACK); // the saved frame now follows the arguments of the callee
+        }
+        out.append('@').append(nArgs).append('\n').append(SET_TAIL_COPY);
+        for (int i = 0; i < (isFrameInPlace ? nArgs : nArgs + 5); i++) {
+            out.append(TAIL_COPY_WORD);
+        }
+        out.append(isFrameInPlace ? SP_TO_LCL : SET_TAIL_CALLEE_FRAME);
+        out.append('@').append(functionName).append('\n').append(CALL_JUMP);
+    }
+
+    /**
+     * writes the body of a leaf function in place of a 'Call' commend. the arguments stay on the
+     * stack, and are read relative to SP since the inlined code has no frame. THIS and THAT are
+     * saved on the stack when the body changes them. in the end the returned value replaces the
+     * arguments, as after a real call.
+     *
+     * @param functionName - the name of the function (callee)
+     * @param callee       - the body of the function
+     * @param nArgs        - number of args the function gets.
+     */
+    void writeInlineCall(String functionName, InlineFunction callee, int nArgs) throws IOException {
+        if (withComments) {
+            out.append(INLINE_COMMENT).append(functionName).append(' ').append(nArgs).append('\n');
+        }
+        int depth = 0; // number of values above the arguments
+        if (callee.savesThis()) {
+            out.append(PUSH_THIS_IN_ASSAMBLY);
+            depth++;
+        }
+        if (callee.savesThat()) {
+            out.append(PUSH_THAT_IN_ASSAMBLY);
+            depth++;
+        }
+        boolean isSaving = depth > 0;
+        for (int i = 0; i < callee.size(); i++) {
+            int commendType = callee.getCommendType(i);
+            String arg1 = callee.getArg1(i);
+            int arg2 = callee.getArg2(i);
+            if (commendType == C_ARITHMETIC) {
+                writeArithmetic(arg1);
+            } else if (commendType == C_PUSH && arg1.equals(ARGUMENT)) {
+                if (withComments) {
+                    out.append(COMMENT_PREFIX).append(PUSH_STR).append(ARGUMENT).append(' ').append(arg2).append('\n');
+                }
+                out.append('@').append(nArgs + depth - arg2).append('\n').append(INDEX_TO_D)
+                        .append(STACK_VALUE_TO_D).append(PUSH_FROM_D_IN_ASSAMBLY);
+            } else if (commendType == C_PUSH) {
+                writePush(arg1, arg2, callee.getFileName());
+            } else if (commendType == C_POP) {
+                writePop(arg1, arg2, callee.getFileName());
+            }
+            depth += InlineFunction.stackChange(commendType, arg1);
+        }
+
+        if (!isSaving && nArgs == 1) {
+            out.append(RESULT_OVER_ARGUMENT);
+        } else if (isSaving || nArgs > 1) {
+            out.append(RESULT_TO_R13);
+            if (callee.savesThat()) {
+                out.append(POP_THAT_IN_ASSAMBLY);
+            }
+            if (callee.savesThis()) {
+                out.append(POP_THIS_IN_ASSAMBLY);
+            }
+            if (nArgs > 0) {
+                out.append('@').append(nArgs).append('\n').append(DROP_D_VALUES);
+            }
+            out.append(R13_TO_STACK);
+        } // with no arguments and nothing saved, the returned value is already in place
     }
 
     /**
@@ -659,10 +989,12 @@ public class CodeWriter {
      *
      * @param label The label to goto
      */
-    void writeIf(String label) {
-        printCommendOrComment("if-goto " + label, PRINT_COMMENT);
+    void writeIf(String label) throws IOException {
+        if (withComments) {
+            out.append(COMMENT_PREFIX).append("if-goto ").append(label).append('\n');
+        }
 
-        printCommendOrComment(If(label), PRINT_COMMEND);
+        If(label);
 
 
     }
@@ -672,9 +1004,13 @@ public class CodeWriter {
      *
      * @param label the new label name.
      */
-    void writeLabel(String label) {
-        printCommendOrComment("label " + label + " " + callsCount, PRINT_COMMENT);
-        printCommendOrComment("(" + labelName(label) + ")", PRINT_COMMEND);
+    void writeLabel(String label) throws IOException {
+        if (withComments) {
+            out.append(LABEL_COMMENT).append(label).append(' ').append(callsCount).append('\n');
+        }
+        out.append('(');
+        labelName(label);
+        out.append(')').append('\n');
     }
 
     /**
@@ -682,9 +1018,11 @@ public class CodeWriter {
      *
      * @param label label to goto
      */
-    void writeGoto(String label) {
-        printCommendOrComment("goto " + label, PRINT_COMMENT);
-        printCommendOrComment(goTo(label), PRINT_COMMEND);
+    void writeGoto(String label) throws IOException {
+        if (withComments) {
+            out.append(COMMENT_PREFIX).append("goto ").append(label).append('\n');
+        }
+        goTo(label);
 
 
     }
@@ -694,19 +1032,20 @@ public class CodeWriter {
      * initializes the VM. this code must be placed at the beginning of the
      * generated *.asm file
      */
-    void writeInit() {
+    void writeInit() throws IOException {
         printCommendOrComment("the Bootstrap command", PRINT_COMMENT);
-        functionName = "Sys.init";
-        printCommendOrComment(BOOTSTRAP_CODE_PARTIAL + call("Sys.init", 0), PRINT_COMMENT);
+        printCommendOrComment(ENTRY_FUNCTION, PRINT_COMMENT);
+        out.append(BOOTSTRAP_CODE_PARTIAL);
+        call(ENTRY_FUNCTION, 0, BOOTSTRAP_SCOPE, 0);
 
     }
 
     /**
      * writes assembly code that effects the 'Return' commend
      */
-    void writeReturn() {
+    void writeReturn() throws IOException {
         printCommendOrComment("return ", PRINT_COMMENT);
-        printCommendOrComment(getReturn(), PRINT_COMMEND);
+        out.append(RETURN_IN_ASSAMBLY);
     }
 
     /**
@@ -715,15 +1054,36 @@ public class CodeWriter {
      * @param funcName string of function name
      * @param numVars  number of to send to function.
      */
-    void writeFunction(String funcName, int numVars) {
+    void writeFunction(String funcName, int numVars) throws IOException {
         initFunctionNameAndCalls(funcName);
-        printCommendOrComment("func. " + funcName + " " + numVars, PRINT_COMMENT);
-        printCommendOrComment("(" + funcName + ")", PRINT_COMMEND);
+        if (withComments) {
+            out.append(COMMENT_PREFIX).append("func. ").append(funcName).append(' ').append(numVars).append('\n');
+        }
+        out.append('(').append(funcName).append(')').append('\n');
         // initializing local vars on the stack
-        IntStream.range(0, numVars).forEach(i -> printCommendOrComment(pushConst(0), PRINT_COMMEND));
+        if (numVars > MAX_UNROLLED_LOCALS) {
+            zeroLocalsInLoop(funcName, numVars);
+        } else if (numVars > 0) {
+            out.append(FIRST_LOCAL_TO_ZERO);
+            for (int i = 1; i < numVars; i++) {
+                out.append(NEXT_LOCAL_TO_ZERO);
+            }
+            out.append(SP_AFTER_LOCALS);
+        }
     }
 
-
-}
+    /**
+     * writes a loop that pushes numVars zeros, the code size does not depend on numVars.
+     *
+     * @param funcName string of function name, used for the loop label
+     * @param numVars  number of locals, more than zero
+     */
+    private void zeroLocalsInLoop(String funcName, int numVars) throws IOException {
+        out.append('@').append(numVars).append('\n').append(INDEX_TO_D);
+        out.append('(').append(funcName).append(LOCALS_LOOP_LABEL).append(')').append('\n');
+        out.append(LOCAL_TO_ZERO_IN_LOOP);
+        out.append('@').append(funcName).append(LOCALS_LOOP_LABEL).append('\n').append(JGT);
+    }
 
 
+}
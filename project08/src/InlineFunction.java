@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/**
+ * this class represent the body of a small leaf function, that is translated at its call sites
+ * instead of being called. a function can be inlined when it has no locals, calls no other function,
+ * has no labels, never pops to its arguments and ends with its only 'return' commend, with exactly
+ * the returned value on its stack. the commends are added one by one while the function is read, and
+ * any commend that breaks these rules drops the function.
+ */
+public class InlineFunction {
+
+    /*********************** Constants **********************/
+    private static final String ARGUMENT = "argument";
+    private static final String LOCAL = "local";
+    private static final String POINTER = "pointer";
+    private static final String NEG_COMMAND = "neg";
+    private static final String NOT_COMMAND = "not";
+    private static final int CAPACITY = 8;
+
+    /*********************** Data Members ******************/
+    private final String fileName;
+    private final int maxSize;
+    private int[] types = new int[CAPACITY];
+    private String[] args1 = new String[CAPACITY];
+    private int[] args2 = new int[CAPACITY];
+    private int size = 0;
+    private int depth = 0; // number of values the body pushed so far
+    private boolean savesThis = false;
+    private boolean savesThat = false;
+    private boolean isReturned = false;
+    private boolean isInlinable = true;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param fileName name of the vm file of the function, without suffix, used for its statics
+     * @param maxSize  the maximal number of commends in the body, not counting 'return'
+     */
+    public InlineFunction(String fileName, int maxSize) {
+        this.fileName = fileName;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * the change in the stack size after a commend of a function body
+     *
+     * @param commendType type of the commend, one of the Parser constants
+     * @param arg1        first argument of the commend
+     * @return number of values the commend adds to the stack, negative if it removes values
+     */
+    static int stackChange(int commendType, String arg1) {
+        if (commendType == Parser.C_PUSH) {
+            return 1;
+        } else if (commendType == Parser.C_POP) {
+            return -1;
+        } else if (commendType == Parser.C_ARITHMETIC) {
+            return arg1.equals(NEG_COMMAND) || arg1.equals(NOT_COMMAND) ? 0 : -1;
+        }
+        return 0;
+    }
+
+    /**
+     * adds the next commend of the function body
+     *
+     * @param commendType type of the commend, one of the Parser constants
+     * @param arg1        first argument of the commend
+     * @param arg2        second argument of the commend
+     */
+    void add(int commendType, String arg1, int arg2) {
+        if (!isInlinable || commendType == Parser.C_COMMENT) {
+            return;
+        }
+        if (isReturned || size == maxSize && commendType != Parser.C_RETURN) {
+            isInlinable = false; // code after the return, or too large
+            return;
+        }
+        switch (commendType) {
+            case Parser.C_RETURN:
+                isReturned = true;
+                isInlinable = depth == 1;
+                return;
+            case Parser.C_POP:
+                if (arg1.equals(ARGUMENT) || arg1.equals(LOCAL)) {
+                    isInlinable = false;
+                    return;
+                }
+                if (arg1.equals(POINTER)) {
+                    savesThis |= arg2 == 0;
+                    savesThat |= arg2 == 1;
+                }
+                break;
+            case Parser.C_PUSH:
+                if (arg1.equals(LOCAL)) {
+                    isInlinable = false;
+                    return;
+                }
+                break;
+            case Parser.C_ARITHMETIC:
+                break;
+            default: // call, function and flow commends
+                isInlinable = false;
+                return;
+        }
+        depth += stackChange(commendType, arg1);
+        if (depth < 0) {
+            isInlinable = false; // pops its own arguments
+            return;
+        }
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            args1 = Arrays.copyOf(args1, size * 2);
+            args2 = Arrays.copyOf(args2, size * 2);
+        }
+        types[size] = commendType;
+        args1[size] = arg1;
+        args2[size] = arg2;
+        size++;
+    }
+
+    /**
+     * @return true if the whole function was added and it can be inlined
+     */
+    boolean isInlinable() {
+        return isInlinable && isReturned;
+    }
+
+    /********************** Getters ***********************/
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return number of commends in the body, not counting 'return'
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCommendType(int index) {
+        return types[index];
+    }
+
+    public String getArg1(int index) {
+        return args1[index];
+    }
+
+    public int getArg2(int index) {
+        return args2[index];
+    }
+
+    /**
+     * @return true if the body changes THIS, which must be restored after it
+     */
+    public boolean savesThis() {
+        return savesThis;
+    }
+
+    /**
+     * @return true if the body changes THAT, which must be restored after it
+     */
+    public boolean savesThat() {
+        return savesThat;
+    }
+
+
+}
@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * this class represent a reusable output buffer of assembly code. the code is ascii only, so every
+ * char is written as a single byte and numbers are written digit by digit, without creating Strings.
+ * a buffer that is connected to a channel is flushed to it in large chunks whenever it fills up,
+ * otherwise it grows and keeps all the code in memory.
+ */
+public class OutputBuffer {
+
+    /*********************** Constants **********************/
+    private static final int CAPACITY = 1 << 16;
+    private static final int MAX_INT_LENGTH = 11;
+
+    /*********************** Data Members ******************/
+    private final WritableByteChannel channel;
+    private byte[] bytes = new byte[CAPACITY];
+    private int size = 0;
+
+
+    /**
+     * Constructor of an in memory buffer.
+     */
+    public OutputBuffer() {
+        this(null);
+    }
+
+    /**
+     * Constructor of a buffer that is flushed to the given channel.
+     *
+     * @param channel the channel to write the code into, or null to keep it in memory
+     */
+    public OutputBuffer(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * encodes a constant piece of assembly code once, so it can be appended as is.
+     *
+     * @param text ascii text
+     * @return the bytes of the text
+     */
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * appends pre encoded text.
+     *
+     * @param text bytes of ascii text
+     * @return this buffer
+     * @throws IOException by the channel
+     */
+    OutputBuffer append(byte[] text) throws IOException {
+        reserve(text.length);
+        System.arraycopy(text, 0, bytes, size, text.length);
+        size += text.length;
+        return this;
+    }
+
+    /**
+     * appends ascii text, char by char.
+     *
+     * @param text ascii text
+     * @return this buffer
+     * @throws IOException by the channel
+     */
+    OutputBuffer append(String text) throws IOException {
+        int length = text.length();
+        reserve(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * appends a single ascii char.
+     *
+     * @param c ascii char
+     * @return this buffer
+     * @throws IOException by the channel
+     */
+    OutputBuffer append(char c) throws IOException {
+        reserve(1);
+        bytes[size++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * appends the decimal digits of a number.
+     *
+     * @param value the number
+     * @return this buffer
+     * @throws IOException by the channel
+     */
+    OutputBuffer append(int value) throws IOException {
+        reserve(MAX_INT_LENGTH);
+        long digits = value;
+        if (digits < 0) {
+            bytes[size++] = '-';
+            digits = -digits;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + digits % 10);
+            digits /= 10;
+        } while (digits > 0);
+        // the digits were written from the lowest one, reverse them
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte digit = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = digit;
+        }
+        return this;
+    }
+
+    /**
+     * appends all the code of an in memory buffer.
+     *
+     * @param other the buffer to append
+     * @return this buffer
+     * @throws IOException by the channel
+     */
+    OutputBuffer append(OutputBuffer other) throws IOException {
+        if (channel != null && other.size > bytes.length - size) {
+            flush();
+            write(other.bytes, other.size); // too large to copy, write it directly
+            return this;
+        }
+        reserve(other.size);
+        System.arraycopy(other.bytes, 0, bytes, size, other.size);
+        size += other.size;
+        return this;
+    }
+
+    /**
+     * counts the instructions of an in memory buffer, in one pass. every line that is not empty, not a
+     * comment and not a label is an instruction.
+     *
+     * @param offsets byte offsets of line starts in the buffer, in increasing order. each one is
+     *                replaced by the number of instructions before it, which is its ROM address
+     *                relative to the start of the buffer.
+     * @param length  number of offsets to convert
+     * @return the number of instructions in the buffer
+     */
+    int countInstructions(int[] offsets, int length) {
+        int instructions = 0;
+        int next = 0;
+        boolean isLineStart = true;
+        boolean isInstruction = false;
+        for (int i = 0; i < size; i++) {
+            while (next < length && offsets[next] == i) {
+                offsets[next++] = instructions;
+            }
+            byte b = bytes[i];
+            if (isLineStart) {
+                isInstruction = b != '(' && b != '/' && b != '\n';
+                isLineStart = false;
+            }
+            if (b == '\n') {
+                if (isInstruction) {
+                    instructions++;
+                }
+                isLineStart = true;
+            }
+        }
+        while (next < length) {
+            offsets[next++] = instructions;
+        }
+        return instructions;
+    }
+
+    /**
+     * counts the instructions of an in memory buffer that were written after a given position.
+     *
+     * @param from byte offset of a line start in the buffer
+     * @return the number of instructions from that offset to the end of the buffer
+     */
+    int countInstructions(int from) {
+        int instructions = 0;
+        boolean isLineStart = true;
+        boolean isInstruction = false;
+        for (int i = from; i < size; i++) {
+            byte b = bytes[i];
+            if (isLineStart) {
+                isInstruction = b != '(' && b != '/' && b != '\n';
+                isLineStart = false;
+            }
+            if (b == '\n') {
+                if (isInstruction) {
+                    instructions++;
+                }
+                isLineStart = true;
+            }
+        }
+        return instructions;
+    }
+
+    /**
+     * @return the number of labels in an in memory buffer
+     */
+    int countLabels() {
+        int labels = 0;
+        for (int i = 0; i < size; i++) {
+            if (bytes[i] == '(' && (i == 0 || bytes[i - 1] == '\n')) {
+                labels++;
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * @return the number of bytes in the buffer
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * writes the buffered code to the channel, if there is one.
+     *
+     * @throws IOException by the channel
+     */
+    void flush() throws IOException {
+        if (channel != null) {
+            write(bytes, size);
+            size = 0;
+        }
+    }
+
+    /**
+     * flushes the buffer and closes its channel.
+     *
+     * @throws IOException by the channel
+     */
+    void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * makes room for the given number of bytes, by flushing or by growing the buffer.
+     *
+     * @param length number of bytes about to be appended
+     * @throws IOException by the channel
+     */
+    private void reserve(int length) throws IOException {
+        if (size + length <= bytes.length) {
+            return;
+        }
+        if (channel != null) {
+            flush();
+            if (length <= bytes.length) {
+                return;
+            }
+        }
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+    }
+
+    /**
+     * writes bytes to the channel.
+     *
+     * @param source the bytes to write
+     * @param length number of bytes to write from the start of source
+     * @throws IOException by the channel
+     */
+    private void write(byte[] source, int length) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap(source, 0, length);
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+
+}
@@ -1,9 +1,11 @@
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 /**
  * this class represent a parser object. this object parses a file analyze and
@@ -21,52 +23,28 @@ public class Parser {
     protected static final int C_FUNC = 8;
     protected static final int C_RETURN = 9;
 
-    /*********************** Regex *************************/
-    // VM part I
-    private static final String ARITHMETIC = "\\s*(?<arith>\\w+)\\s*((?://.*))*";
-    private static final String PUSH = "\\s*(?<push>push)\\s*(?<seg>\\w+)\\s*(?<i>\\d+)\\s*((?://.*))*";
-    private static final String POP = "\\s*(?<pop>pop)\\s*(?<seg>\\w+)\\s*(?<i>\\d+)\\s*((?://.*))*";
-    private static final String COMMENT = "\\s*((?://.*))*";
-    // VM part II
-    private static final String GOTO = "\\s*(?<command>goto)\\s+(?<label>\\S+)" + COMMENT;
-    private static final String IF_GOTO = "\\s*(?<command>if-goto)\\s+(?<label>\\S+)" + COMMENT;
-    private static final String RETURN = "\\s*(?<command>return)" + COMMENT;
-    private static final String CALL = "\\s*(?<command>call)\\s+(?<func>\\S+)\\s+" +
-            "(?<nArgs>\\d+)" + COMMENT;
-    private static final String LABEL = "\\s*(?<command>label)\\s+(?<label>\\S+)" + COMMENT;
-    private static final String FUNC = "\\s*(?<command>function)\\s+(?<funcName>\\S+)\\s+(?<nVars>\\d+)" + COMMENT;
-
-    /*********************** Pattrens **********************/
-    // VM part I
-    private static final Pattern ARITHMETIC_PATTERN = Pattern.compile(ARITHMETIC);
-    private static final Pattern PUSH_PATTERN = Pattern.compile(PUSH);
-    private static final Pattern POP_PATTERN = Pattern.compile(POP);
-    private static final Pattern COMMENT_PATTERN = Pattern.compile(COMMENT);
-    // VM part II
-    private static final Pattern IF_GOTO_PATTERN = Pattern.compile(IF_GOTO);
-    private static final Pattern RETURN_PATTERN = Pattern.compile(RETURN);
-    private static final Pattern LABEL_PATTERN = Pattern.compile(LABEL);
-    private static final Pattern FUNC_PATTERN = Pattern.compile(FUNC);
-    private static final Pattern CALL_PATTERN = Pattern.compile(CALL);
-    private static final Pattern GOTO_PATTERN = Pattern.compile(GOTO);
-
-
-    /*********************** Constants **********************/
-    // VM part I
-    private static final String ARITHMETIC_GROUP = "arith";
-    private static final String MEM_SEGMENT_GROUP = "seg";
-    private static final String INDEX_GROUP = "i";
-    // VM part II
-    private static final String NAME_GROUP = "funcName";
-    private static final String LABEL_GROUP = "label";
-    private static final String NVARS_GROUP = "nVars";
-    private static final String FUNC_GROUP = "func";
-    private static final String NARGS_GROUP = "nArgs";
+    /*********************** Commends **********************/
+    private static final String COMMENT_PREFIX = "//";
+    private static final String PUSH = "push";
+    private static final String POP = "pop";
+    private static final String GOTO = "goto";
+    private static final String IF_GOTO = "if-goto";
+    private static final String LABEL = "label";
+    private static final String FUNC = "function";
+    private static final String CALL = "call";
+    private static final String RETURN = "return";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final String INVALID_COMMEND_MESSAGE = "invalid vm commend: ";
+
     /*********************** Data Members ******************/
     private final BufferedReader reader;
+    private final Iterator<String> commands; // commends given in memory, instead of the reader
+    private String nextLine; // look-ahead line, null at the end of the input
     private int commendType = -1;
     private String arg1 = null;
     private int arg2 = 0;
+    private int cursor; // position of the next word in the analyzed line
+    private int lineEnd; // end of the analyzed line, without its comment
 
 
     /**
@@ -75,7 +53,30 @@ public class Parser {
      * @param inputFile The input File to parse on.
      */
     public Parser(File inputFile) throws IOException {
-        reader = Files.newBufferedReader(inputFile.toPath());
+        this(Channels.newReader(FileChannel.open(inputFile.toPath()), StandardCharsets.UTF_8.newDecoder(),
+                READ_BUFFER_SIZE));
+    }
+
+    /**
+     * Constructor of class, gets any input, for example a pipe, & initialize reader
+     *
+     * @param input The input to parse on.
+     */
+    public Parser(Reader input) throws IOException {
+        reader = new BufferedReader(input, READ_BUFFER_SIZE);
+        commands = null;
+        nextLine = readLine();
+    }
+
+    /**
+     * Constructor of class, gets commends that are already in memory, one commend per line
+     *
+     * @param commands The commends to parse on.
+     */
+    public Parser(Iterable<String> commands) throws IOException {
+        reader = null;
+        this.commands = commands.iterator();
+        nextLine = readLine();
     }
 
 
@@ -99,7 +100,9 @@ public class Parser {
      * @throws IOException
      */
     void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        }
     }
 
     /**
@@ -109,90 +112,168 @@ public class Parser {
      * @throws IOException
      */
     String adanvce() throws IOException {
-        if (hasMoreCommends()) {
+        String line = nextLine;
+        if (line != null) {
+            nextLine = readLine();
+        }
+        return line;
+    }
+
+    /**
+     * @return the next line of the input, or null at its end
+     * @throws IOException
+     */
+    private String readLine() throws IOException {
+        if (reader != null) {
             return reader.readLine();
         }
-        return null;
+        return commands.hasNext() ? commands.next() : null;
     }
 
     /**
-     * checks if there is more lines to read in the input file
+     * checks if there is more lines to read, by the line that was read ahead.
      *
      * @return result - boolean if there is more lines (commends, etc.) to read.
      */
     public boolean hasMoreCommends() {
-        boolean result = false;
-
-        try {
-            result = reader.ready();
-        } catch (IOException e) {
-            System.err.println(e);
-        }
-        return result;
+        return nextLine != null;
     }
 
 
     /**
      * this func gets an line - string from a reade file, analyze it and
-     * updates Parser instructions field accordingly
+     * updates Parser instructions field accordingly.
+     * the line is split to words by white spaces, and classified by its first word.
      *
      * @param line string
+     * @throws IllegalArgumentException if a word of the commend is missing, an index is not a number,
+     *                                  or there are extra words after the commend
      */
     public void lineAnalizer(String line) {
-        // VM part I
-        Matcher ArithInsruction = ARITHMETIC_PATTERN.matcher(line);
-        Matcher PushnInsruction = PUSH_PATTERN.matcher(line);
-        Matcher PopInsruction = POP_PATTERN.matcher(line);
-        Matcher commentMach = COMMENT_PATTERN.matcher(line);
-        // VM part II
-        Matcher labelInsruction = LABEL_PATTERN.matcher(line);
-        Matcher funcInsruction = FUNC_PATTERN.matcher(line);
-        Matcher ifGotoInsruction = IF_GOTO_PATTERN.matcher(line);
-        Matcher callInsruction = CALL_PATTERN.matcher(line);
-        Matcher returnInsruction = RETURN_PATTERN.matcher(line);
-        Matcher gotoInsruction = GOTO_PATTERN.matcher(line);
-
-
-        if (ArithInsruction.matches()) {
-            commendType = C_ARITHMETIC;
-            arg1 = ArithInsruction.group(ARITHMETIC_GROUP);
-
-        } else if (PushnInsruction.matches()) {
-            commendType = C_PUSH;
-            arg1 = PushnInsruction.group(MEM_SEGMENT_GROUP);
-            arg2 = Integer.parseInt(PushnInsruction.group(INDEX_GROUP));
-
-        } else if (PopInsruction.matches()) {
-            commendType = C_POP;
-            arg1 = PopInsruction.group(MEM_SEGMENT_GROUP);
-            arg2 = Integer.parseInt(PopInsruction.group(INDEX_GROUP));
-        } else if (commentMach.matches()) {
-            arg1 = null;
-            arg2 = 0;
+        lineEnd = line.indexOf(COMMENT_PREFIX);
+        if (lineEnd == -1) {
+            lineEnd = line.length();
+        }
+        cursor = 0;
+        arg1 = null;
+        arg2 = 0;
+
+        String commend = nextWord(line);
+        if (commend == null) {
             commendType = C_COMMENT;
-        } else if (labelInsruction.matches()) {
-            arg1 = labelInsruction.group(LABEL_GROUP);
-            commendType = C_LABEL;
-        } else if (funcInsruction.matches()) {
-            commendType = C_FUNC;
-            arg1 = funcInsruction.group(NAME_GROUP);
-            arg2 = Integer.parseInt(funcInsruction.group(NVARS_GROUP));
-        } else if (gotoInsruction.matches()) {
-            commendType = C_GOTO;
-            arg1 = gotoInsruction.group(LABEL_GROUP);
-        } else if (ifGotoInsruction.matches()) {
-            commendType = C_IF_GOTO;
-            arg1 = ifGotoInsruction.group(LABEL_GROUP);
-        } else if (callInsruction.matches()) {
-            commendType = C_CALL;
-            arg1 = callInsruction.group(FUNC_GROUP);
-            arg2 = Integer.parseInt(callInsruction.group(NARGS_GROUP));
+            return;
+        }
+        switch (commend) {
+            case PUSH:
+                commendType = C_PUSH;
+                arg1 = requiredWord(line);
+                arg2 = nextInt(line);
+                break;
+            case POP:
+                commendType = C_POP;
+                arg1 = requiredWord(line);
+                arg2 = nextInt(line);
+                break;
+            case LABEL:
+                commendType = C_LABEL;
+                arg1 = requiredWord(line);
+                break;
+            case FUNC:
+                commendType = C_FUNC;
+                arg1 = requiredWord(line);
+                arg2 = nextInt(line);
+                break;
+            case GOTO:
+                commendType = C_GOTO;
+                arg1 = requiredWord(line);
+                break;
+            case IF_GOTO:
+                commendType = C_IF_GOTO;
+                arg1 = requiredWord(line);
+                break;
+            case CALL:
+                commendType = C_CALL;
+                arg1 = requiredWord(line);
+                arg2 = nextInt(line);
+                break;
+            case RETURN:
+                commendType = C_RETURN;
+                break;
+            default:
+                commendType = C_ARITHMETIC;
+                arg1 = commend;
+                break;
+        }
+        skipSpaces(line);
+        if (cursor < lineEnd) {
+            throw new IllegalArgumentException(INVALID_COMMEND_MESSAGE + line);
+        }
+    }
 
+    /**
+     * skips the white spaces before the next word of the line.
+     *
+     * @param line the analyzed line
+     */
+    private void skipSpaces(String line) {
+        while (cursor < lineEnd && Character.isWhitespace(line.charAt(cursor))) {
+            cursor++;
         }
-        if (returnInsruction.matches()) {
-            commendType = C_RETURN;
+    }
 
+    /**
+     * reads the next word of the line and moves the cursor after it.
+     *
+     * @param line the analyzed line
+     * @return the next word, or null if there are no more words in the line
+     */
+    private String nextWord(String line) {
+        skipSpaces(line);
+        int start = cursor;
+        while (cursor < lineEnd && !Character.isWhitespace(line.charAt(cursor))) {
+            cursor++;
+        }
+        return cursor > start ? line.substring(start, cursor) : null;
+    }
+
+    /**
+     * reads the next word of the line, that must exist, and moves the cursor after it.
+     *
+     * @param line the analyzed line
+     * @return the next word
+     * @throws IllegalArgumentException if there are no more words in the line
+     */
+    private String requiredWord(String line) {
+        String word = nextWord(line);
+        if (word == null) {
+            throw new IllegalArgumentException(INVALID_COMMEND_MESSAGE + line);
+        }
+        return word;
+    }
+
+    /**
+     * reads the next word of the line as a non negative int, and moves the cursor after it.
+     *
+     * @param line the analyzed line
+     * @return the int value of the word
+     * @throws IllegalArgumentException if the word is missing or is not a number
+     */
+    private int nextInt(String line) {
+        skipSpaces(line);
+        int start = cursor;
+        int value = 0;
+        while (cursor < lineEnd) {
+            char digit = line.charAt(cursor);
+            if (digit < '0' || digit > '9' || value > (Integer.MAX_VALUE - 9) / 10) {
+                break;
+            }
+            value = value * 10 + (digit - '0');
+            cursor++;
+        }
+        if (cursor == start || (cursor < lineEnd && !Character.isWhitespace(line.charAt(cursor)))) {
+            throw new IllegalArgumentException(INVALID_COMMEND_MESSAGE + line);
         }
+        return value;
     }
 
 
@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * this class represent the mapping of the lines of a single vm file to the ROM addresses of the
+ * assembly code translated from them. it is used instead of comments for debugging a translation
+ * written without comments.
+ */
+public class SourceMap {
+
+    /*********************** Constants **********************/
+    private static final int CAPACITY = 1 << 10;
+
+    /*********************** Data Members ******************/
+    private final String fileName;
+    private int[] lines = new int[CAPACITY];
+    private int[] addresses = new int[CAPACITY]; // byte offsets until resolve is called
+    private int size = 0;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param fileName name of the vm file, as written in the map
+     */
+    public SourceMap(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * marks the start of the code of a vm line.
+     *
+     * @param vmLine line number in the vm file, starting from 1
+     * @param offset byte offset in the buffer the file is translated into
+     */
+    void mark(int vmLine, int offset) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, size * 2);
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        lines[size] = vmLine;
+        addresses[size] = offset;
+        size++;
+    }
+
+    /**
+     * converts the marked byte offsets to ROM addresses relative to the start of the translated code.
+     *
+     * @param code the in memory buffer the file was translated into
+     * @return the number of instructions in the translated code
+     */
+    int resolve(OutputBuffer code) {
+        return code.countInstructions(addresses, size);
+    }
+
+    /**
+     * writes the map, a "File.vm:line address" line for every marked vm line.
+     *
+     * @param out         the buffer to write into
+     * @param baseAddress the ROM address the translated code of the file starts at
+     * @throws IOException by the buffer
+     */
+    void write(OutputBuffer out, int baseAddress) throws IOException {
+        for (int i = 0; i < size; i++) {
+            out.append(fileName).append(':').append(lines[i]).append(' ').append(baseAddress + addresses[i])
+                    .append('\n');
+        }
+    }
+
+
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * this class represent the RAM addresses of the static variables of a whole vm program. all the
+ * statics of all the files are packed together from address 16, the most used ones first, so the
+ * assembly code refers to them by number and the assembler has no variables left to allocate.
+ */
+public class StaticSegment {
+
+    /*********************** Constants **********************/
+    private static final int FIRST_ADDRESS = 16;
+    private static final int LAST_ADDRESS = 255; // the stack starts at 256
+    private static final int NO_ADDRESS = -1;
+    private static final String OVERFLOW_MESSAGE = "static segment overflow: %d static variables do not fit "
+            + "in RAM[" + FIRST_ADDRESS + ".." + LAST_ADDRESS + "]";
+
+    /*********************** Data Members ******************/
+    private final Map<String, int[]> addresses = new HashMap<>();
+
+
+    /**
+     * Constructor of class, allocates the statics that are used by the program
+     *
+     * @param accessCounts - for every file name, the number of accesses to each of its statics by index
+     * @throws IOException if the statics overflow into the stack
+     */
+    public StaticSegment(Map<String, int[]> accessCounts) throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        List<int[]> statics = new ArrayList<>(); // pairs of file number and static index
+        for (Map.Entry<String, int[]> file : accessCounts.entrySet()) {
+            int[] counts = file.getValue();
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] > 0) {
+                    statics.add(new int[]{fileNames.size(), index});
+                }
+            }
+            fileNames.add(file.getKey());
+        }
+        if (statics.size() > LAST_ADDRESS - FIRST_ADDRESS + 1) {
+            throw new IOException(String.format(OVERFLOW_MESSAGE, statics.size()));
+        }
+        // most used first, then by name so the same program always gets the same addresses
+        statics.sort((first, second) -> {
+            int byCount = Integer.compare(countOf(accessCounts, fileNames, second),
+                    countOf(accessCounts, fileNames, first));
+            if (byCount != 0) {
+                return byCount;
+            }
+            int byFile = fileNames.get(first[0]).compareTo(fileNames.get(second[0]));
+            return byFile != 0 ? byFile : Integer.compare(first[1], second[1]);
+        });
+
+        int address = FIRST_ADDRESS;
+        for (int[] variable : statics) {
+            String fileName = fileNames.get(variable[0]);
+            int[] fileAddresses = addresses.computeIfAbsent(fileName, name -> newAddresses(accessCounts.get(name)));
+            fileAddresses[variable[1]] = address++;
+        }
+    }
+
+    /**
+     * @param fileName - name of the vm file, without suffix
+     * @param index    - index in the static segment of the file
+     * @return the RAM address of the static, or -1 if it was not allocated
+     */
+    public int getAddress(String fileName, int index) {
+        int[] fileAddresses = addresses.get(fileName);
+        if (fileAddresses == null || index < 0 || index >= fileAddresses.length) {
+            return NO_ADDRESS;
+        }
+        return fileAddresses[index];
+    }
+
+    private static int countOf(Map<String, int[]> accessCounts, List<String> fileNames, int[] variable) {
+        return accessCounts.get(fileNames.get(variable[0]))[variable[1]];
+    }
+
+    private static int[] newAddresses(int[] counts) {
+        int[] fileAddresses = new int[counts.length];
+        Arrays.fill(fileAddresses, NO_ADDRESS);
+        return fileAddresses;
+    }
+
+
+}
@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * this class represent the counters of a single translation: vm commends and generated instructions
+ * by commend type, the ROM size of every function, the labels and the time spent in every phase.
+ * every file is counted by its own instance on its own thread, and the instances are merged into the
+ * metrics of the whole run, which can be written as a JSON report or published through JMX.
+ */
+public class TranslationMetrics implements TranslationMetricsMXBean {
+
+    /*********************** Constants **********************/
+    // names of the Parser commend types, by their value
+    private static final String[] COMMEND_TYPES = {"comment", "arithmetic", "push", "pop", "goto", "if-goto",
+            "label", "call", "function", "return"};
+    private static final String BOOTSTRAP = "bootstrap";
+    private static final String OBJECT_NAME = "VMtranslator:type=TranslationMetrics";
+
+    /*********************** Data Members ******************/
+    private int files = 0;
+    private final long[] commands = new long[COMMEND_TYPES.length];
+    private final long[] instructions = new long[COMMEND_TYPES.length];
+    private long bootstrapInstructions = 0;
+    private final Map<String, Long> functionInstructions = new HashMap<>();
+    private long labels = 0;
+    private long prepassNanos = 0;
+    private long parseNanos = 0;
+    private long codegenNanos = 0;
+    private long ioNanos = 0;
+    private long totalNanos = 0;
+
+
+    /**
+     * counts a translated vm commend
+     *
+     * @param commendType type of the commend, one of the Parser constants
+     */
+    void addCommend(int commendType) {
+        commands[commendType]++;
+    }
+
+    /**
+     * counts the instructions generated for a vm commend
+     *
+     * @param commendType  type of the commend, one of the Parser constants
+     * @param functionName the function the instructions belong to
+     * @param count        number of instructions
+     */
+    void addInstructions(int commendType, String functionName, int count) {
+        instructions[commendType] += count;
+        functionInstructions.merge(functionName, (long) count, Long::sum);
+    }
+
+    void addFile() {
+        files++;
+    }
+
+    void addBootstrapInstructions(int count) {
+        bootstrapInstructions += count;
+    }
+
+    void addLabels(int count) {
+        labels += count;
+    }
+
+    void addPrepassNanos(long nanos) {
+        prepassNanos += nanos;
+    }
+
+    void addParseNanos(long nanos) {
+        parseNanos += nanos;
+    }
+
+    void addCodegenNanos(long nanos) {
+        codegenNanos += nanos;
+    }
+
+    void addIoNanos(long nanos) {
+        ioNanos += nanos;
+    }
+
+    void addTotalNanos(long nanos) {
+        totalNanos += nanos;
+    }
+
+    /**
+     * adds the metrics of a single translated file
+     *
+     * @param file the metrics of the file
+     */
+    void merge(TranslationMetrics file) {
+        files += file.files;
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] += file.commands[i];
+            instructions[i] += file.instructions[i];
+        }
+        bootstrapInstructions += file.bootstrapInstructions;
+        file.functionInstructions.forEach((name, count) -> functionInstructions.merge(name, count, Long::sum));
+        labels += file.labels;
+        prepassNanos += file.prepassNanos;
+        parseNanos += file.parseNanos;
+        codegenNanos += file.codegenNanos;
+        ioNanos += file.ioNanos;
+    }
+
+    /**
+     * makes these metrics the metrics of the last translation in the platform MBean server
+     *
+     * @param metrics the metrics of a whole run
+     * @throws IOException if the MBean can not be registered
+     */
+    static synchronized void publish(TranslationMetrics metrics) throws IOException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /********************** MXBean ***********************/
+    @Override
+    public int getFiles() {
+        return files;
+    }
+
+    @Override
+    public long getCommands() {
+        long total = 0;
+        for (int i = 0; i < commands.length; i++) {
+            if (i != Parser.C_COMMENT) {
+                total += commands[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getInstructions() {
+        long total = bootstrapInstructions;
+        for (long count : instructions) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getLabels() {
+        return labels;
+    }
+
+    @Override
+    public Map<String, Long> getCommandsByType() {
+        return byType(commands);
+    }
+
+    @Override
+    public Map<String, Long> getInstructionsByType() {
+        Map<String, Long> byType = byType(instructions);
+        byType.put(BOOTSTRAP, bootstrapInstructions);
+        return byType;
+    }
+
+    /**
+     * @return the ROM size of every function, the largest first
+     */
+    @Override
+    public Map<String, Long> getFunctionInstructions() {
+        List<Map.Entry<String, Long>> functions = new ArrayList<>(functionInstructions.entrySet());
+        functions.sort((first, second) -> {
+            int bySize = Long.compare(second.getValue(), first.getValue());
+            return bySize != 0 ? bySize : first.getKey().compareTo(second.getKey());
+        });
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> function : functions) {
+            sorted.put(function.getKey(), function.getValue());
+        }
+        return sorted;
+    }
+
+    @Override
+    public long getPrepassNanos() {
+        return prepassNanos;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    @Override
+    public long getCodegenNanos() {
+        return codegenNanos;
+    }
+
+    @Override
+    public long getIoNanos() {
+        return ioNanos;
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("{\n");
+        report.append("  \"files\": ").append(files).append(",\n");
+        report.append("  \"commands\": ").append(getCommands()).append(",\n");
+        report.append("  \"instructions\": ").append(getInstructions()).append(",\n");
+        report.append("  \"labels\": ").append(labels).append(",\n");
+        appendObject(report, "commandsByType", getCommandsByType());
+        report.append(",\n");
+        appendObject(report, "instructionsByType", getInstructionsByType());
+        report.append(",\n");
+        appendObject(report, "functionInstructions", getFunctionInstructions());
+        report.append(",\n");
+        Map<String, Long> time = new LinkedHashMap<>();
+        time.put("prepass", prepassNanos);
+        time.put("parse", parseNanos);
+        time.put("codegen", codegenNanos);
+        time.put("io", ioNanos);
+        time.put("total", totalNanos);
+        appendObject(report, "timeNanos", time);
+        report.append("\n}\n");
+        return report.toString();
+    }
+
+    /**
+     * @param counts counters indexed by the Parser commend types
+     * @return the counters by the name of the type, without comments
+     */
+    private static Map<String, Long> byType(long[] counts) {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (i != Parser.C_COMMENT) {
+                byType.put(COMMEND_TYPES[i], counts[i]);
+            }
+        }
+        return byType;
+    }
+
+    /**
+     * appends a JSON object of numbers, as a member of the report
+     *
+     * @param report the report
+     * @param name   name of the member
+     * @param values the numbers by their names
+     */
+    private static void appendObject(StringBuilder report, String name, Map<String, Long> values) {
+        report.append("  \"").append(name).append("\": {");
+        boolean isFirst = true;
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            report.append(isFirst ? "\n" : ",\n");
+            report.append("    \"");
+            for (char c : value.getKey().toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    report.append('\\');
+                }
+                report.append(c);
+            }
+            report.append("\": ").append(value.getValue());
+            isFirst = false;
+        }
+        report.append(isFirst ? "}" : "\n  }");
+    }
+
+
+}
@@ -0,0 +1,37 @@
+import java.util.Map;
+
+/**
+ * the management interface of the metrics of the last translation, for a translator that runs inside
+ * a long running JVM such as a build daemon.
+ */
+public interface TranslationMetricsMXBean {
+
+    int getFiles();
+
+    long getCommands();
+
+    long getInstructions();
+
+    long getLabels();
+
+    Map<String, Long> getCommandsByType();
+
+    Map<String, Long> getInstructionsByType();
+
+    Map<String, Long> getFunctionInstructions();
+
+    long getPrepassNanos();
+
+    long getParseNanos();
+
+    long getCodegenNanos();
+
+    long getIoNanos();
+
+    long getTotalNanos();
+
+    /**
+     * @return all the metrics as a JSON object
+     */
+    String getReport();
+}
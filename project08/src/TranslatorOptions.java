@@ -0,0 +1,160 @@
+/**
+ * this class represent the options of a translation. on the command line they follow the input path:
+ * -nocomments  writes only instructions and labels, without a comment for every VM commend
+ * -map         writes a Xxx.map file with the ROM address of the code of every vm line
+ * -inline n    inlines leaf functions of up to n commends at their call sites, no inlining by default
+ * -tailcalls   translates 'call' followed by 'return' as a jump that reuses the frame of the caller
+ * -staticalloc writes statics as RAM addresses packed from 16, instead of File.i symbols for the assembler
+ * -metrics     writes a Xxx.metrics.json report of the commends, instructions and time of the translation
+ * -jmx         publishes the metrics of the translation as an MXBean, for a translator in a long running JVM
+ * a translation may also require a complete program, where Sys.init and every called function are defined,
+ * as a build of a whole program does.
+ */
+public class TranslatorOptions {
+
+    /*********************** Constants **********************/
+    private static final String NO_COMMENTS_OPTION = "-nocomments";
+    private static final String MAP_OPTION = "-map";
+    private static final String INLINE_OPTION = "-inline";
+    private static final String TAIL_CALLS_OPTION = "-tailcalls";
+    private static final String STATIC_ALLOCATION_OPTION = "-staticalloc";
+    private static final String METRICS_OPTION = "-metrics";
+    private static final String JMX_OPTION = "-jmx";
+    private static final String UNKNOWN_OPTION_MESSAGE = "unknown option: ";
+    private static final String MISSING_VALUE_MESSAGE = "missing value of option: ";
+
+    /*********************** Data Members ******************/
+    private boolean withComments = true;
+    private boolean withSourceMap = false;
+    private int maxInlineSize = 0;
+    private boolean withTailCalls = false;
+    private boolean withStaticAllocation = false;
+    private boolean withMetricsReport = false;
+    private boolean withMetricsMBean = false;
+    private boolean completeProgram = false;
+
+
+    /**
+     * reads the options from command line arguments
+     *
+     * @param args the arguments
+     * @param from index of the first option in args
+     * @return the options
+     */
+    static TranslatorOptions parse(String[] args, int from) {
+        TranslatorOptions options = new TranslatorOptions();
+        for (int i = from; i < args.length; i++) {
+            switch (args[i]) {
+                case NO_COMMENTS_OPTION:
+                    options.setComments(false);
+                    break;
+                case MAP_OPTION:
+                    options.setSourceMap(true);
+                    break;
+                case TAIL_CALLS_OPTION:
+                    options.setTailCalls(true);
+                    break;
+                case STATIC_ALLOCATION_OPTION:
+                    options.setStaticAllocation(true);
+                    break;
+                case METRICS_OPTION:
+                    options.setMetricsReport(true);
+                    break;
+                case JMX_OPTION:
+                    options.setMetricsMBean(true);
+                    break;
+                case INLINE_OPTION:
+                    if (++i == args.length) {
+                        throw new IllegalArgumentException(MISSING_VALUE_MESSAGE + INLINE_OPTION);
+                    }
+                    options.setMaxInlineSize(Integer.parseInt(args[i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException(UNKNOWN_OPTION_MESSAGE + args[i]);
+            }
+        }
+        return options;
+    }
+
+    /********************** Getters & Setters ***********************/
+    public boolean withComments() {
+        return withComments;
+    }
+
+    public TranslatorOptions setComments(boolean withComments) {
+        this.withComments = withComments;
+        return this;
+    }
+
+    public boolean withSourceMap() {
+        return withSourceMap;
+    }
+
+    public TranslatorOptions setSourceMap(boolean withSourceMap) {
+        this.withSourceMap = withSourceMap;
+        return this;
+    }
+
+    public int getMaxInlineSize() {
+        return maxInlineSize;
+    }
+
+    public TranslatorOptions setMaxInlineSize(int maxInlineSize) {
+        this.maxInlineSize = maxInlineSize;
+        return this;
+    }
+
+    public boolean withTailCalls() {
+        return withTailCalls;
+    }
+
+    public TranslatorOptions setTailCalls(boolean withTailCalls) {
+        this.withTailCalls = withTailCalls;
+        return this;
+    }
+
+    public boolean withStaticAllocation() {
+        return withStaticAllocation;
+    }
+
+    public TranslatorOptions setStaticAllocation(boolean withStaticAllocation) {
+        this.withStaticAllocation = withStaticAllocation;
+        return this;
+    }
+
+    /**
+     * @return true if metrics are collected, for a report or for JMX
+     */
+    public boolean withMetrics() {
+        return withMetricsReport || withMetricsMBean;
+    }
+
+    public boolean withMetricsReport() {
+        return withMetricsReport;
+    }
+
+    public TranslatorOptions setMetricsReport(boolean withMetricsReport) {
+        this.withMetricsReport = withMetricsReport;
+        return this;
+    }
+
+    public boolean withMetricsMBean() {
+        return withMetricsMBean;
+    }
+
+    public TranslatorOptions setMetricsMBean(boolean withMetricsMBean) {
+        this.withMetricsMBean = withMetricsMBean;
+        return this;
+    }
+
+    public boolean isCompleteProgram() {
+        return completeProgram;
+    }
+
+    public TranslatorOptions setCompleteProgram(boolean completeProgram) {
+        this.completeProgram = completeProgram;
+        return this;
+    }
+
+
+}
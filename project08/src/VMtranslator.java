@@ -1,55 +1,349 @@
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * runs all the program, execute the translation and writes a translated file
  */
 public class VMtranslator {
 
+    /*********************** Constants **********************/
+    private static final String MAP_FILE_SUFFIX = ".map";
+    private static final String METRICS_FILE_SUFFIX = ".metrics.json";
+    private static final String OUTPUT_FILE_SUFFIX = ".asm";
+    private static final String UNDEFINED_FUNCTIONS_MESSAGE = "undefined functions: ";
+
+
     public static void main(String[] args) throws IOException {
         File input = new File(Paths.get(args[0]).toAbsolutePath().toString());
+        TranslatorOptions options = TranslatorOptions.parse(args, 1);
         File file;
 
         if (!input.isDirectory() && input.isFile() && input.getName().endsWith(".vm")) {
-            CodeWriter writer = new CodeWriter(input);
-            writer.writeInit();
-            translator(writer, input);
+            translate(input, Collections.singletonList(input), options);
 
         } else if (input.isDirectory()) {
             String[] filesArray;
             filesArray = input.list();
-            CodeWriter writer = new CodeWriter(input);
-            writer.writeInit();
+            List<File> vmFiles = new ArrayList<>();
             for (String fileName : filesArray) {
 
                 if (fileName.endsWith(".vm")) {
                     file = new File(input.toPath().toAbsolutePath().resolve(fileName).toString());
-                    translator(writer, file);
+                    vmFiles.add(file);
+                }
+            }
+            translate(input, vmFiles, options);
+        }
+    }
+
+    /**
+     * translates all the given vm files into a single output file, with the default options.
+     *
+     * @param input   - the input file or directory, used to name the output file
+     * @param vmFiles - the vm files to translate
+     * @throws IOException
+     */
+    public static void translate(File input, List<File> vmFiles) throws IOException {
+        translate(input, vmFiles, new TranslatorOptions());
+    }
+
+    /**
+     * translates all the given vm files into a single output file, and writes the source map and the
+     * metrics report next to it when the options ask for them.
+     *
+     * @param input   - the input file or directory, used to name the output file
+     * @param vmFiles - the vm files to translate
+     * @param options - the translation options
+     * @return the metrics of the translation, or null if they were not collected
+     * @throws IOException
+     */
+    public static TranslationMetrics translate(File input, List<File> vmFiles, TranslatorOptions options)
+            throws IOException {
+        List<VmSource> sources = new ArrayList<>();
+        for (File vmFile : vmFiles) {
+            sources.add(VmSource.of(vmFile));
+        }
+        TranslationMetrics metrics;
+        try (FileChannel output = openOutput(input, OUTPUT_FILE_SUFFIX);
+             FileChannel map = options.withSourceMap() ? openOutput(input, MAP_FILE_SUFFIX) : null) {
+            metrics = translate(sources, output, map, options);
+        }
+        if (metrics != null && options.withMetricsReport()) {
+            try (FileChannel report = openOutput(input, METRICS_FILE_SUFFIX)) {
+                OutputBuffer buffer = new OutputBuffer(report);
+                buffer.append(metrics.getReport());
+                buffer.flush();
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * translates vm sources into any channel, for example a build that keeps all its files in memory.
+     *
+     * @param sources - the vm sources to translate
+     * @param output  - the channel to write the assembly code into, it is flushed but not closed
+     * @param options - the translation options, a source map is not written
+     * @return the metrics of the translation, or null if they were not collected
+     * @throws IOException
+     */
+    public static TranslationMetrics translate(List<VmSource> sources, WritableByteChannel output,
+                                               TranslatorOptions options) throws IOException {
+        return translate(sources, output, null, options);
+    }
+
+    /**
+     * translates vm sources into a single assembly program. each source is translated on its own
+     * thread into a private buffer, and the buffers are written after the bootstrap code in the order
+     * of the sources. all the state of a translation is local to this call, so it may run for
+     * several programs at the same time.
+     *
+     * @param sources - the vm sources to translate
+     * @param output  - the channel to write the assembly code into, it is flushed but not closed
+     * @param map     - the channel to write the source map into, or null
+     * @param options - the translation options
+     * @return the metrics of the translation, or null if they were not collected
+     * @throws IOException
+     */
+    public static TranslationMetrics translate(List<VmSource> sources, WritableByteChannel output,
+                                               WritableByteChannel map, TranslatorOptions options)
+            throws IOException {
+        return translate(sources.iterator(), output, map, options);
+    }
+
+    /**
+     * translates vm sources that may still be produced while they are read, for example by a compiler
+     * that runs on other threads. the pre-pass reads each source as soon as the iterator returns it, and
+     * the code is generated after the last one, since it depends on the call graph of the whole program.
+     * an iterator that fails may throw an UncheckedIOException, which is thrown as its IOException.
+     *
+     * @param sources - iterator over the vm sources to translate, in the order of the output
+     * @param output  - the channel to write the assembly code into, it is flushed but not closed
+     * @param map     - the channel to write the source map into, or null
+     * @param options - the translation options
+     * @return the metrics of the translation, or null if they were not collected
+     * @throws IOException also before any code is written, if the options require a complete program and
+     *                     Sys.init or a called function is not defined
+     */
+    public static TranslationMetrics translate(Iterator<VmSource> sources, WritableByteChannel output,
+                                               WritableByteChannel map, TranslatorOptions options)
+            throws IOException {
+        long startTime = System.nanoTime();
+        TranslationMetrics metrics = options.withMetrics() ? new TranslationMetrics() : null;
+        CallGraph callGraph = new CallGraph(options.getMaxInlineSize());
+        List<VmSource> program = new ArrayList<>();
+        try {
+            while (sources.hasNext()) { // pre-pass over all sources
+                VmSource source = sources.next();
+                program.add(source);
+                callGraph.add(source);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        callGraph.markReachable();
+        if (options.isCompleteProgram()) {
+            Set<String> undefinedFunctions = callGraph.getUndefinedFunctions();
+            if (!undefinedFunctions.isEmpty()) {
+                throw new IOException(UNDEFINED_FUNCTIONS_MESSAGE + String.join(", ", undefinedFunctions));
+            }
+        }
+        StaticSegment staticSegment = options.withStaticAllocation() ? callGraph.allocateStatics() : null;
+        if (metrics != null) {
+            metrics.addPrepassNanos(System.nanoTime() - startTime);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(program.size(), Runtime.getRuntime().availableProcessors())));
+        List<SourceMap> sourceMaps = new ArrayList<>();
+        List<TranslationMetrics> sourceMetrics = new ArrayList<>();
+        List<Future<OutputBuffer>> translations = new ArrayList<>();
+        for (VmSource source : program) {
+            SourceMap sourceMap = map != null ? new SourceMap(source.getFileName()) : null;
+            TranslationMetrics metricsOfSource = options.withMetrics() ? new TranslationMetrics() : null;
+            sourceMaps.add(sourceMap);
+            sourceMetrics.add(metricsOfSource);
+            translations.add(executor.submit(() ->
+                    translateToBuffer(source, callGraph, staticSegment, options, sourceMap, metricsOfSource)));
+        }
+        executor.shutdown();
+
+        // the bootstrap is written to memory first, so its size is known to the source map
+        OutputBuffer bootstrap = new OutputBuffer();
+        CodeWriter bootstrapWriter = new CodeWriter(bootstrap);
+        bootstrapWriter.setComments(options.withComments());
+        bootstrapWriter.writeInit();
+        int bootstrapSize = bootstrap.countInstructions(0);
+        int address = bootstrapSize;
+
+        CodeWriter writer = new CodeWriter(output);
+        OutputBuffer mapBuffer = map != null ? new OutputBuffer(map) : null;
+        long ioTime = 0;
+        try {
+            long writeStart = System.nanoTime();
+            writer.writeTranslation(bootstrap);
+            ioTime += System.nanoTime() - writeStart;
+            for (int i = 0; i < translations.size(); i++) {
+                OutputBuffer translation = translations.get(i).get();
+                writeStart = System.nanoTime();
+                writer.writeTranslation(translation);
+                SourceMap sourceMap = sourceMaps.get(i);
+                if (sourceMap != null) {
+                    int instructions = sourceMap.resolve(translation);
+                    sourceMap.write(mapBuffer, address);
+                    address += instructions;
                 }
+                ioTime += System.nanoTime() - writeStart;
+            }
+            writeStart = System.nanoTime();
+            writer.flush();
+            if (mapBuffer != null) {
+                mapBuffer.flush();
+            }
+            ioTime += System.nanoTime() - writeStart;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (metrics != null) {
+            for (TranslationMetrics metricsOfSource : sourceMetrics) {
+                metrics.merge(metricsOfSource);
+            }
+            metrics.addBootstrapInstructions(bootstrapSize);
+            metrics.addLabels(bootstrap.countLabels());
+            metrics.addIoNanos(ioTime);
+            metrics.addTotalNanos(System.nanoTime() - startTime);
+            if (options.withMetricsMBean()) {
+                TranslationMetrics.publish(metrics);
             }
-            writer.close();
         }
+        return metrics;
     }
 
     /**
-     * this func. gets an input file and is used to activate the Parser
-     * and CodeWriter to create an output traslated file.
+     * opens an output file of a translation, Xxx.suffix, for writing from its start.
      *
-     * @param inputFile - input file
+     * @param input  - the input file or directory, used to name the output file
+     * @param suffix - suffix of the output file
+     * @return the channel of the file
      * @throws IOException
      */
-    private static void translator(CodeWriter writer, File inputFile) throws IOException {
-        Parser fileParser = new Parser(inputFile);
+    private static FileChannel openOutput(File input, String suffix) throws IOException {
+        return FileChannel.open(CodeWriter.outputPath(input, suffix), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
 
-        writer.setFileName(inputFile.getName().replace(".vm", ""));
-        writer.printCommendOrComment("Current File: " + writer.fileName, CodeWriter.PRINT_COMMENT);
+    /**
+     * translates a single vm file with its own CodeWriter.
+     *
+     * @param source        - the vm source
+     * @param callGraph     - call graph of the whole program
+     * @param staticSegment - the allocated statics of the whole program, or null
+     * @param options       - the translation options
+     * @param sourceMap     - map to mark the translated vm lines in, or null
+     * @param metrics       - metrics to count the translation in, or null
+     * @return the translated assembly code of the file
+     * @throws IOException
+     */
+    private static OutputBuffer translateToBuffer(VmSource source, CallGraph callGraph, StaticSegment staticSegment,
+                                                  TranslatorOptions options, SourceMap sourceMap,
+                                                  TranslationMetrics metrics) throws IOException {
+        OutputBuffer buffer = new OutputBuffer();
+        CodeWriter writer = new CodeWriter(buffer);
+        writer.setComments(options.withComments());
+        writer.setStaticSegment(staticSegment);
+        translator(writer, source, callGraph, options.withTailCalls(), sourceMap, metrics);
+        if (metrics != null) {
+            metrics.addFile();
+            metrics.addLabels(buffer.countLabels());
+        }
+        return buffer;
+    }
+
+    /**
+     * this func. gets a vm source and is used to activate the Parser
+     * and CodeWriter to create an output traslated file. functions that can not be reached
+     * from Sys.init are skipped. a 'call' is held until the next commend is read, to find tail calls.
+     *
+     * @param source        - the vm source
+     * @param callGraph     - call graph of the whole program
+     * @param withTailCalls - true to translate 'call' followed by 'return' as a tail call
+     * @param sourceMap     - map to mark the translated vm lines in, or null
+     * @param metrics       - metrics to count the translation in, or null
+     * @throws IOException
+     */
+    private static void translator(CodeWriter writer, VmSource source, CallGraph callGraph, boolean withTailCalls,
+                                   SourceMap sourceMap, TranslationMetrics metrics) throws IOException {
+        Parser fileParser = source.openParser();
+
+        writer.setFileName(source.getName());
+        writer.printCommendOrComment("Current File: " + writer.getFileName(), CodeWriter.PRINT_COMMENT);
 
         String line;
+        boolean isReachable = true; // commends before the first function are always translated
+        String currentFunction = null;
+        String pendingCall = null; // a call that may be a tail call
+        int pendingArgs = 0;
+        int lineNumber = 0;
+        long time = System.nanoTime();
         while (fileParser.hasMoreCommends()) {
             line = fileParser.adanvce();
+            lineNumber++;
             fileParser.lineAnalizer(line); // updates parser fields
             int CommendType = fileParser.getCommendType();
+            int position = writer.position();
+            if (metrics != null) {
+                time = addParseTime(metrics, time);
+            }
+
+            if (pendingCall != null && CommendType != Parser.C_COMMENT) {
+                boolean isTailCall = CommendType == Parser.C_RETURN;
+                if (isTailCall) {
+                    writer.writeTailCall(pendingCall, pendingArgs, callGraph.getArgCount(currentFunction));
+                } else {
+                    writer.writeCall(pendingCall, pendingArgs);
+                }
+                pendingCall = null;
+                if (metrics != null) {
+                    addInstructions(metrics, writer, position, Parser.C_CALL, currentFunction);
+                }
+                position = writer.position();
+                if (isTailCall) {
+                    if (metrics != null) {
+                        metrics.addCommend(Parser.C_RETURN);
+                        time = addCodegenTime(metrics, time);
+                    }
+                    continue;
+                }
+            }
+            if (CommendType == Parser.C_FUNC) {
+                isReachable = callGraph.isReachable(fileParser.getArg1());
+                currentFunction = fileParser.getArg1();
+            }
+            if (!isReachable) {
+                continue; // dead function
+            }
+            if (sourceMap != null && CommendType != Parser.C_COMMENT) {
+                sourceMap.mark(lineNumber, position);
+            }
 
             if (CommendType == Parser.C_ARITHMETIC) {
                 writer.writeArithmetic(fileParser.getArg1());
@@ -74,12 +368,66 @@ public class VMtranslator {
                 writer.writeGoto(fileParser.getArg1());
 
             } else if (CommendType == Parser.C_CALL) {
-                writer.writeCall(fileParser.getArg1(), fileParser.getArg2());
+                InlineFunction callee = callGraph.getInlineFunction(fileParser.getArg1());
+                if (callee != null) {
+                    writer.writeInlineCall(fileParser.getArg1(), callee, fileParser.getArg2());
+                } else if (withTailCalls && currentFunction != null) {
+                    pendingCall = fileParser.getArg1();
+                    pendingArgs = fileParser.getArg2();
+                } else {
+                    writer.writeCall(fileParser.getArg1(), fileParser.getArg2());
+                }
             }
 
+            if (metrics != null && CommendType != Parser.C_COMMENT) {
+                metrics.addCommend(CommendType);
+                addInstructions(metrics, writer, position, CommendType, currentFunction);
+                time = addCodegenTime(metrics, time);
+            }
+        }
+        if (pendingCall != null) {
+            int position = writer.position();
+            writer.writeCall(pendingCall, pendingArgs);
+            if (metrics != null) {
+                addInstructions(metrics, writer, position, Parser.C_CALL, currentFunction);
+                addCodegenTime(metrics, time);
+            }
         }
         fileParser.close();
     }
 
+    /**
+     * counts the instructions the writer wrote for a commend.
+     *
+     * @param position     - position of the writer before the commend
+     * @param commendType  - type of the commend
+     * @param functionName - the function of the commend, or null outside of functions
+     */
+    private static void addInstructions(TranslationMetrics metrics, CodeWriter writer, int position,
+                                        int commendType, String functionName) {
+        metrics.addInstructions(commendType, functionName != null ? functionName : writer.getFileName(),
+                writer.instructionsSince(position));
+    }
+
+    /**
+     * @param time - the time the parsing started at
+     * @return the current time
+     */
+    private static long addParseTime(TranslationMetrics metrics, long time) {
+        long now = System.nanoTime();
+        metrics.addParseNanos(now - time);
+        return now;
+    }
+
+    /**
+     * @param time - the time the code generation started at
+     * @return the current time
+     */
+    private static long addCodegenTime(TranslationMetrics metrics, long time) {
+        long now = System.nanoTime();
+        metrics.addCodegenNanos(now - time);
+        return now;
+    }
+
 
 }
@@ -0,0 +1,73 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * this class represent the input of a single vm file: a .vm file on disk, or commends in memory, for
+ * example straight from the VMWriter of the compiler. a source is read twice, once by the CallGraph
+ * pre-pass and once by the translation, so commends in memory must be an Iterable that can be
+ * iterated more than once, such as a List.
+ */
+public class VmSource {
+
+    /*********************** Constants **********************/
+    private static final String INPUT_FILE_SUFFIX = ".vm";
+
+    /*********************** Data Members ******************/
+    private final String name;
+    private final File file;
+    private final Iterable<String> commands;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param name     name of the source without suffix, the scope of its statics and labels
+     * @param file     the .vm file, or null for commends in memory
+     * @param commands the commends, or null for a file
+     */
+    private VmSource(String name, File file, Iterable<String> commands) {
+        this.name = name;
+        this.file = file;
+        this.commands = commands;
+    }
+
+    /**
+     * @param vmFile a Xxx.vm file
+     * @return the source of the file, named Xxx
+     */
+    public static VmSource of(File vmFile) {
+        return new VmSource(vmFile.getName().replace(INPUT_FILE_SUFFIX, ""), vmFile, null);
+    }
+
+    /**
+     * @param name     name of the source, as the name of the .vm file without suffix, for example the
+     *                 name of the compiled Jack class
+     * @param commands the vm commends, one per element
+     * @return the source of the commends
+     */
+    public static VmSource of(String name, Iterable<String> commands) {
+        return new VmSource(name, null, commands);
+    }
+
+    /**
+     * @return a new parser at the start of the source
+     * @throws IOException
+     */
+    Parser openParser() throws IOException {
+        return file != null ? new Parser(file) : new Parser(commands);
+    }
+
+    /********************** Getters ***********************/
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the source with the .vm suffix, as it is written in source maps
+     */
+    public String getFileName() {
+        return name + INPUT_FILE_SUFFIX;
+    }
+
+
+}
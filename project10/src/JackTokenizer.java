@@ -1,7 +1,10 @@
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Hashtable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,15 +36,26 @@ public class JackTokenizer {
     private static final Pattern STRING_CONST_PATTERN = Pattern.compile(STRING_CONST);
     private static final Pattern IDENTIFIER_PATTERN = Pattern.compile(IDENTIFIER);
     private static final Pattern INT_CONST_PATTERN = Pattern.compile(INT_CONST);
+
+    // the states of the comments scanner between two chars
+    private static final int CODE_STATE = 0;
+    private static final int STRING_STATE = 1;
+    private static final int SLASH_STATE = 2; // after a '/' in code, that may start a comment
+    private static final int BLOCK_COMMENT_STATE = 3;
+    private static final int BLOCK_COMMENT_STAR_STATE = 4; // after a '*' in a block comment, that may end it
+
     private static final String ERROR_MESSAGE = "Function called for the wrong type! expected: ";
     private static final String ERROR_MESSAGE_GOT = "got: ";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
 
 
     /********************** Data Members **************************/
     private final BufferedReader reader;
+    private String nextLine; // look-ahead line, null at the end of the input
     public String currType;
     public String currentToken;
     private String currentLine;
+    private boolean inBlockComment = false; // true if a block comment continues on the next line
     private int currentTokenNumber = 0;
     private Hashtable<Integer, String> tokensHashTable;
 
@@ -53,7 +67,19 @@ public class JackTokenizer {
      * @throws IOException
      */
     public JackTokenizer(File inputFile) throws IOException {
-        reader = Files.newBufferedReader(inputFile.toPath());
+        this(Channels.newReader(FileChannel.open(inputFile.toPath()), StandardCharsets.UTF_8.newDecoder(),
+                READ_BUFFER_SIZE));
+    }
+
+    /**
+     * Opens any input stream, for example a pipe, and gets ready to tokenize it.
+     *
+     * @param input - input stream
+     * @throws IOException
+     */
+    public JackTokenizer(Reader input) throws IOException {
+        reader = new BufferedReader(input, READ_BUFFER_SIZE);
+        nextLine = reader.readLine();
         tokensHashTable = new Hashtable<>();
         fillHashTable();
     }
@@ -69,7 +95,7 @@ public class JackTokenizer {
     private void fillHashTable() throws IOException {
         Integer currTokenNumber = 0;
         while (hasMoreLines()) { // parse over file
-            currentLine = trimCommentsAndSpaces(reader.readLine());
+            currentLine = trimCommentsAndSpaces(readLine());
             Matcher tokenMatcher = TOKENS_PATTERN.matcher(currentLine);
 
             // parse a line and adds token to hashTable
@@ -145,42 +171,67 @@ public class JackTokenizer {
     }
 
     /**
-     * delete comments and leading and trailing white spaces from a given line,
-     * and updates the inCommentScope accordingly.
+     * delete comments and leading and trailing white spaces from a given line, and updates
+     * inBlockComment accordingly. the line is scanned char by char, so comment marks inside strings are
+     * kept, and a comment is replaced by a space, so it still separates the tokens around it.
      *
      * @param line - string of the line currently read
      * @return line without comments and leading and trailing white spaces
      */
     private String trimCommentsAndSpaces(String line) {
-        line = line.trim(); // trim the outlines spaces
-        int start = line.indexOf("\"");
-        int end = line.lastIndexOf("\"");
-        int lineCommentIndex = line.indexOf("//");
-
-
-        if (lineCommentIndex != -1 && lineCommentIndex < start || lineCommentIndex > end) {
-            line = line.substring(0, lineCommentIndex); // delete line comment
-        } else {
-            int lineBlockIndex = line.indexOf("/*");
-            if (lineBlockIndex != -1 && lineBlockIndex < start || lineBlockIndex > end) {
-                line = line.substring(0, lineBlockIndex); // delete method/func comment
-            } else {
-                int endLineBlockIndex = line.indexOf("*/");
-                if (endLineBlockIndex != -1 && endLineBlockIndex < start || endLineBlockIndex > end) {
-                    line = "";
-                } else {
-                    int middleBlockIndex = line.indexOf("*");
-                    if (middleBlockIndex == 0) {
-                        line = "";
+        StringBuilder code = new StringBuilder(line.length());
+        int state = inBlockComment ? BLOCK_COMMENT_STATE : CODE_STATE;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            switch (state) {
+                case CODE_STATE:
+                    if (c == '/') {
+                        state = SLASH_STATE;
+                    } else {
+                        code.append(c);
+                        if (c == '"') {
+                            state = STRING_STATE;
+                        }
                     }
-                }
-
+                    break;
+                case STRING_STATE:
+                    code.append(c);
+                    if (c == '"') {
+                        state = CODE_STATE;
+                    }
+                    break;
+                case SLASH_STATE:
+                    if (c == '/') {
+                        i = line.length(); // a line comment, to the end of the line
+                        state = CODE_STATE;
+                    } else if (c == '*') {
+                        state = BLOCK_COMMENT_STATE;
+                    } else {
+                        code.append('/');
+                        state = CODE_STATE;
+                        i--; // the char after the '/' is scanned again, as code
+                    }
+                    break;
+                case BLOCK_COMMENT_STATE:
+                    if (c == '*') {
+                        state = BLOCK_COMMENT_STAR_STATE;
+                    }
+                    break;
+                default: // BLOCK_COMMENT_STAR_STATE
+                    if (c == '/') {
+                        code.append(' ');
+                        state = CODE_STATE;
+                    } else if (c != '*') {
+                        state = BLOCK_COMMENT_STATE;
+                    }
+                    break;
             }
-
-
         }
-        return line;
-
+        if (state == SLASH_STATE) {
+            code.append('/');
+        }
+        inBlockComment = state == BLOCK_COMMENT_STATE || state == BLOCK_COMMENT_STAR_STATE;
+        return code.toString().trim();
     }
 
     /**
@@ -258,18 +309,26 @@ public class JackTokenizer {
     }
 
     /**
-     * checks if there is more lines to read in the input file
+     * checks if there is more lines to read, by the line that was read ahead.
      *
      * @return result - boolean if there is more lines commends, etc. to read.
      */
     private boolean hasMoreLines() {
-        boolean result = false;
-        try {
-            result = reader.ready();
-        } catch (IOException e) {
-            System.err.println(e);
+        return nextLine != null;
+    }
+
+    /**
+     * returns the next line of the input and reads the line after it ahead.
+     *
+     * @return the next line, or null at the end of the input
+     * @throws IOException - by reader
+     */
+    private String readLine() throws IOException {
+        String line = nextLine;
+        if (line != null) {
+            nextLine = reader.readLine();
         }
-        return result;
+        return line;
     }
 
 
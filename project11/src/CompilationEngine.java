@@ -1,86 +1,65 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Hashtable;
-import java.util.stream.IntStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This class effects the actual compilation output. Gets its input from a
- * JackTokenizer and emits its parsed structure into an output file or stream.
- * The output is generated by a series of compilexxx routines, one for
- * every syntactic element xxx of the Jack grammar. The contract between
- * these routines is that each compilexxx routine should read the syntactic
- * construct xxx from the input, advance the jackTokenizer exactly beyond xxx,
- * and output the parsing of xxx. Thus, compilexxx may only be called if
- * indeed xxx is the next syntactic element of the input.
+ * JackTokenizer and emits its VM code into an output file or stream.
+ * The class is parsed by a JackParser into a SyntaxTree, and this engine is a backend of the tree: it
+ * visits the declarations of the class in the order of the source, and generates the code of every
+ * syntactic element xxx of the Jack grammar in a compilexxx routine, that gets the node of xxx.
+ * expressions, terms and expression lists are not written as they are visited: they are built into
+ * Expression trees, that are simplified while they are built, and a whole expression is written at once.
+ * with the string pool on, the string constants that a subroutine uses more than once, or inside a loop,
+ * are kept in the string pool of the class, a static variable for each one, that a generated function
+ * Xxx.$init fills with new strings on the first use of any of them. a pooled string constant is then read
+ * from its static variable instead of built again every time it is used, so the strings are shared, and a
+ * program must not change or dispose a string constant. the other string constants are built where they
+ * are used.
  */
-public class CompilationEngine {
+public class CompilationEngine implements SyntaxTree.Visitor, AutoCloseable {
 
     /************************ Constants *****************************/
 
-    private static final String HYPHEN_SYMBOL = "-";
-    private static final String TILDE_SYMBOL = "~";
-    private static final String ADD_SYMBOL = "+";
-    private static final String OPEN_BRACKET_SYMBOL = "(";
-    private static final String CLOSE_BRACKET_SYMBOL = ")";
-    private static final String OPEN_SQUARE_BRACKET_SYMBOL = "[";
     private static final String DOT_SYMBOL = ".";
-    private static final String COMMA_SYMBOL = ",";
-    private static final String ELSE_TAG = "else";
-    private static final String STRING_CONST_TAG = "stringConstant";
-    private static final String SEMICOLON = ";";
-    private static final String IF_STR = "if";
-    private static final String WHILE_STR = "while";
-    private static final String LET_STR = "let";
-    private static final String DO_STR = "do";
-    private static final String RETURN_STR = "return";
-    private static final String VAR_STR = "var";
     private static final String STATIC_STR = "static";
-    private static final String FIELD_STR = "field";
     private static final String CONTRC_STR = "constructor";
-    private static final String FUNC_STR = "function";
     private static final String METHOD_SRT = "method";
-    private static final Hashtable<String, String> opSymbolHashTable = new Hashtable<>();
-    private static final String[] opSymbolList = {"+", "-", "*", "/", "&", "<", ">", "=", "|"};
-    private static final String POINTR_SEG = "pointer";
-    private static final String TEMP_SEG = "temp";
-    private static final String THAT_SEG = "that";
     private static final String LOOP_BEGINS_STR = "BEGIN_LOOP_";
     private static final String LOOP_ENDS_STR = "END_LOOP_";
-    private static final String CONST_SEG = "constant";
     private static final String IF_CONDI_TRUE = "IF_TRUE";
     private static final String IF_CONDI_FALSE = "IF_FALSE";
     private static final String IF_END_STR = "IF_END";
-    private static final String MULTI_FUNC = "Math.multiply";
-    private static final String DIV_FUNC = "Math.divide";
     private static final String THIS_SEG = "this";
-    private static final String ARGUMENT_STR = "argument";
     private static final String MELOCK_STR = "Memory.alloc";
-    private static final String STR_CONSTRACTOR = "String.new";
-    private static final String STR_APPEND = "String.appendChar";
     private static final String TURE_STR = "true";
-    private static final String FALSE_STR = "false";
-    private static final String NULL_STR = "null";
-    private static final String NEG_SYMBOL = "neg";
-
-
-    static {
-        opSymbolHashTable.put("<", "&lt;");
-        opSymbolHashTable.put(">", "&gt;");
-        opSymbolHashTable.put("\"", "&quot;");
-        opSymbolHashTable.put("&", "&amp;");
-    }
+    private static final String STRING_TYPE = "String";
+    // '$' is not valid in Jack names, so the names of the pool do not clash with the names of the class
+    private static final String STRING_POOL_PREFIX = "$string";
+    private static final String POOL_INIT_STR = "$init";
+    // further string constants of a class are built every time. the JackCompiler keeps the statics of
+    // the whole program in RAM[16..255]
+    private static final int MAX_POOL_SIZE = 32;
 
 
     /************************ Data Member *************************/
     private VMWriter writer;
     private JackTokenizer jackTokenizer;
     private SymbolTable symbolTable;
-    private String currTokenType;
-    private String currentToken;
     private int whileCounter = 0;
     private int ifCounter = 0;
     private String currentClass;
+    private final Map<String, SymbolTable.Variable> stringPool = new LinkedHashMap<>();
+    private int poolCounter = 0;
+    private boolean stringPoolOn = false;
+    private final Set<String> poolCandidates = new HashSet<>(); // of the current subroutine
 
 
     /**
@@ -100,726 +79,462 @@ public class CompilationEngine {
     }
 
     /**
-     * close CompilationEngine.
+     * Creates a new compilation engine that reads Jack code from a stream and writes the VM code into
+     * a stream, without files. closing the engine closes both streams.
+     * The next routine called must be compileClass.
      *
+     * @param input  - Input stream of Jack code
+     * @param output - Output stream for VM code
      * @throws IOException
      */
-    void close() throws IOException {
-        jackTokenizer.close();
-        writer.close();
-    }
-
-    /**
-     * Compiles a complete class.
-     */
-    void compileClass() throws IOException {
-        try {
-            for (int i = 0; i < 2; i++) {
-                getNextToken();
-            }
-            currentClass = currentToken;
-            for (int i = 0; i < 2; i++) {
-                getNextToken();
-            }
-            compileClassHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+    public CompilationEngine(Reader input, Writer output) throws IOException {
 
+        writer = new VMWriter(output);
+        jackTokenizer = new JackTokenizer(input);
+        symbolTable = new SymbolTable();
 
-    /**
-     * Compiles a static declaration or a field declaration.
-     */
-    void compileClassVarDec() {
-        try {
-            compileClassVarDecHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
     }
 
-
     /**
-     * Compiles a complete method, function, or constructor.
+     * close CompilationEngine.
+     *
+     * @throws IOException
      */
-    void compileSubroutine() {
-        try {
-            symbolTable.startSubroutine();
-            compileSubroutineHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
+    @Override
+    public void close() throws IOException {
+        jackTokenizer.close();
+        writer.close();
     }
 
     /**
-     * Compiles a possibly empty parameter list, not including the enclosing circlar brackets.
+     * turns the string pool of the class on or off, before the class is compiled. it is off by default.
+     *
+     * @param stringPoolOn - true to pool the string constants used more than once or inside a loop
      */
-    void compileParameterList() {
-        try {
-            getNextToken();
-            compileParameterListHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    void setStringPool(boolean stringPoolOn) {
+        this.stringPoolOn = stringPoolOn;
     }
 
     /**
-     * Compiles a var declaration.
+     * Compiles a complete class. the class is parsed once, and the same tree is visited by this engine
+     * and by the other given backends, such as an XmlWriter.
+     *
+     * @param backends - other backends of the class
+     * @throws IOException if the class can not be read, parsed or written
      */
-    void compileVarDec() {
-        try {
-            compileVarDecHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    void compileClass(SyntaxTree.Visitor... backends) throws IOException {
+        SyntaxTree.Visitor[] visitors = new SyntaxTree.Visitor[backends.length + 1];
+        visitors[0] = this;
+        System.arraycopy(backends, 0, visitors, 1, backends.length);
+        new JackParser(jackTokenizer).parseClass(visitors);
     }
 
-    /**
-     * Compiles a sequence of statements, not including the enclosing curvy brackets.
-     */
-    void compileStatements() {
-        try {
-            compileStatementHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public void visitClass(SyntaxTree tree, int classNode) {
+        currentClass = tree.text(classNode);
     }
 
-    /**
-     * Compiles a do statement.
-     */
-    void compileDo() {
-        try {
-            compileDoHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+    @Override
+    public void visitDeclaration(SyntaxTree tree, int declaration) throws IOException {
+        if (tree.kind(declaration) == SyntaxTree.CLASS_VAR_DEC) {
+            compileClassVarDec(tree, declaration);
+        } else {
+            compileSubroutine(tree, declaration);
         }
     }
 
-    /**
-     * Compiles a let statement.
-     */
-    void compileLet() {
-        try {
-            getNextToken();
-            compileLetHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+    @Override
+    public void endClass(SyntaxTree tree, int classNode) throws IOException {
+        if (!stringPool.isEmpty()) {
+            compilePoolInit();
         }
     }
 
     /**
-     * Compiles a while statement.
+     * Compiles the function Xxx.$init, that builds all the strings of the string pool of the class.
+     *
+     * @throws IOException
      */
-    void compileWhile() {
-        try {
-            compileWhileHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void compilePoolInit() throws IOException {
+        writer.writeFunction(currentClass + DOT_SYMBOL + POOL_INIT_STR, 0);
+        for (Map.Entry<String, SymbolTable.Variable> entry : stringPool.entrySet()) {
+            Expression.string(entry.getKey()).write(writer);
+            writer.writePop(VMWriter.Segment.STATIC, entry.getValue().getIndex());
         }
+        writer.writePush(VMWriter.Segment.CONSTANT, 0);
+        writer.writeReturn();
     }
 
     /**
-     * Compiles a return statement.
+     * Compiles a static declaration or a field declaration.
+     *
+     * @param tree - the tree
+     * @param node - the declaration
      */
-    void compileReturn() {
-        try {
-            getNextToken();
-            compileReturnHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private void compileClassVarDec(SyntaxTree tree, int node) {
+        SymbolTable.Kind variableKind;
+        variableKind = tree.text(node).equals(STATIC_STR) ? SymbolTable.Kind.STATIC : SymbolTable.Kind.FIELD;
+        decHelper(tree, node, variableKind);
     }
 
     /**
-     * Compiles an if statement, possibly with a trailing else clause.
+     * Compiles a complete method, function, or constructor.
+     *
+     * @param tree - the tree
+     * @param node - the subroutine
+     * @throws IOException
      */
-    void compileIf() {
-        try {
-            compileIfHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void compileSubroutine(SyntaxTree tree, int node) throws IOException {
+        symbolTable.startSubroutine();
+        poolCandidates.clear();
+        if (stringPoolOn) {
+            findPoolCandidates(tree, node, false, new HashSet<>());
         }
-    }
-
-    /**
-     * Compiles an expression.
-     */
-    void compileExpression() {
-        try {
-            compileTerm();
-            compileExpressionHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+        String tempType = tree.text(node);
+        if (tempType.equals(METHOD_SRT)) {
+            symbolTable.define(THIS_SEG, currentClass, SymbolTable.Kind.ARG);
+        }
+        int name = tree.child(node, 1);
+        int parameters = tree.nextSibling(node, name);
+        int body = tree.nextSibling(node, parameters);
+        String subroutineName = currentClass + DOT_SYMBOL + tree.text(name);
+        compileParameterList(tree, parameters);
+        int child = tree.firstChild(body);
+        while (tree.kind(child) == SyntaxTree.VAR_DEC) {
+            decHelper(tree, child, SymbolTable.Kind.VAR);
+            child = tree.nextSibling(body, child);
+        }
+        writer.writeFunction(subroutineName, symbolTable.varCount(SymbolTable.Kind.VAR));
+        switch (tempType) {
+            case CONTRC_STR:
+                writer.writePush(VMWriter.Segment.CONSTANT, symbolTable.varCount(SymbolTable.Kind.FIELD));
+                writer.writeCall(MELOCK_STR, 1);
+                writer.writePop(VMWriter.Segment.POINTER, 0);
+                break;
+            case METHOD_SRT:
+                writer.writePush(VMWriter.Segment.ARGUMENT, 0);
+                writer.writePop(VMWriter.Segment.POINTER, 0);
+                break;
         }
+        compileStatements(tree, child);
     }
 
-
     /**
-     * Compiles a possibly empty comma separated list of expressions.
-     */
-    int compileExpressionList() {
-        try {
-            getNextToken();
-            return compileExpressionListHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return -1;
+     * finds the string constants of a subroutine that are worth pooling: the ones used more than once,
+     * and the ones used inside a loop, where they would be built again on every iteration.
+     *
+     * @param tree   - the tree
+     * @param node   - a node of the subroutine
+     * @param inLoop - true if the node is inside a while statement
+     * @param seen   - the string constants found so far
+     */
+    private void findPoolCandidates(SyntaxTree tree, int node, boolean inLoop, Set<String> seen) {
+        if (tree.kind(node) == SyntaxTree.STRING_CONST) {
+            String text = tree.text(node);
+            if (!seen.add(text) || inLoop) {
+                poolCandidates.add(text);
+            }
+            return;
         }
-    }
-
-    /**
-     * Compiles a term.
-     * This routine is faced with a slight difficulty when trying to decide
-     * between some of the alternative parsing rules. Specifically, if the
-     * current token is an identifier, the routine must distinguish between
-     * a variable, an array entry, and a subroutine call.
-     * A single look-ahead token, which may be one of
-     * suffices to distinguish between the three possibilities.
-     * Any other token is not part of this term and should not be advanced over.
-     */
-    void compileTerm() {
-        try {
-            compileTermBasicHelper();
-        } catch (IOException e) {
-            e.printStackTrace();
+        boolean childInLoop = inLoop || tree.kind(node) == SyntaxTree.WHILE;
+        for (int child = tree.firstChild(node); child != SyntaxTree.NONE; child = tree.nextSibling(node, child)) {
+            findPoolCandidates(tree, child, childInLoop, seen);
         }
     }
 
-
     /**
-     * get the next token and its type and updates fields:
-     * currTokenType, currentToken.
+     * Compiles a possibly empty parameter list.
      *
-     * @return true or false if the update was successful.
-     * @throws IOException
+     * @param tree - the tree
+     * @param node - the parameter list
      */
-    private boolean getNextToken() throws IOException {
-        if (jackTokenizer.hasMoreTokens()) {
-            jackTokenizer.advance();
-            currTokenType = jackTokenizer.tokenType();
-            if (currTokenType.equals(JackTokenizer.IDENTIFIER_TOKEN_TYPE)) {
-                currentToken = jackTokenizer.identifier();
-
-            } else if (currTokenType.equals(JackTokenizer.INT_CONST_TOKEN_TYPE)) {
-                currentToken = String.valueOf(jackTokenizer.intVal());
-
-            } else if (currTokenType.equals(JackTokenizer.KEYWORD_TOKEN_TYPE)) {
-                currentToken = jackTokenizer.keyWord();
-
-            } else if (currTokenType.equals(JackTokenizer.STRING_CONST_TOKEN_TYPE)) {
-                currentToken = jackTokenizer.stringVal();
-
-            } else if (currTokenType.equals(JackTokenizer.SYMBOL_TOKEN_TYPE)) {
-                currentToken = String.valueOf(jackTokenizer.currentSymbol());
-
-            } else {
-                return false;
-
-            }
-            return true;
+    private void compileParameterList(SyntaxTree tree, int node) {
+        for (int type = tree.firstChild(node); type != SyntaxTree.NONE; ) {
+            int name = tree.nextSibling(node, type);
+            symbolTable.define(tree.text(name), tree.text(type), SymbolTable.Kind.ARG);
+            type = tree.nextSibling(node, name);
         }
-        return false;
     }
 
-
     /**
-     * helper function for term compilation. this func. in need calls
-     * a more advance helper function.
+     * dec helper, defines the names of a declaration, that all have its type.
      *
-     * @throws IOException
+     * @param tree - the tree
+     * @param node - a declaration, whose first child is the type and the rest are names
+     * @param kind - kind of the names
      */
-    void compileTermBasicHelper() throws IOException {
-
-
-        switch (currTokenType) {
-            case JackTokenizer.INT_CONST_TOKEN_TYPE:
-                Integer index = Integer.valueOf(currentToken);
-                writer.writePush(CONST_SEG, index);
-                getNextToken();
-                return;
-            case JackTokenizer.STRING_CONST_TOKEN_TYPE:
-                writer.writePush(CONST_SEG, currentToken.length());
-                writer.writeCall(STR_CONSTRACTOR, 1);
-
-                IntStream.range(0, currentToken.length()).forEach(i -> {
-                    writer.writePush(CONST_SEG, currentToken.charAt(i));
-                    writer.writeCall(STR_APPEND, 2);
-                });
-                getNextToken();
-                return;
-            case JackTokenizer.KEYWORD_TOKEN_TYPE:
-
-                if (currentToken.equals(TURE_STR)) {
-                    writer.writePush(CONST_SEG, 0);
-                    writer.WriteArithmetic(TILDE_SYMBOL);
-
-                } else if (currentToken.equals(FALSE_STR) || currentToken.equals(NULL_STR)) {
-                    writer.writePush(CONST_SEG, 0);
-
-                } else if (currentToken.equals(THIS_SEG)) {
-                    writer.writePush(POINTR_SEG, 0);
-
-
-                }
-                getNextToken();
-                return;
+    private void decHelper(SyntaxTree tree, int node, SymbolTable.Kind kind) {
+        int type = tree.firstChild(node);
+        String typeName = tree.text(type);
+        for (int name = tree.nextSibling(node, type); name != SyntaxTree.NONE; name = tree.nextSibling(node, name)) {
+            symbolTable.define(tree.text(name), typeName, kind);
         }
-        switch (currentToken) {
-            case HYPHEN_SYMBOL:
-            case TILDE_SYMBOL:
-                String negop = currentToken;
-                switch (negop) {
-                    case HYPHEN_SYMBOL:
-                        negop = NEG_SYMBOL;
-                        break;
-                }
-                getNextToken();
-                compileTerm();
-                writer.WriteArithmetic(negop);
-                break;
-            case OPEN_BRACKET_SYMBOL:
-                getNextToken();
-                compileExpression();
-                getNextToken();
-                break;
-            default:
-                String prevToken = currentToken;
-
-                getNextToken();
-
-                compileTermAdvanceHelper(prevToken);
-                break;
-        }
-
-
     }
 
-
     /**
-     * advance helper function for term compilation.
+     * Compiles a sequence of statements.
      *
-     * @param token
+     * @param tree - the tree
+     * @param node - the statements
      * @throws IOException
      */
-    void compileTermAdvanceHelper(String token) throws IOException {
-
-        int nArgs;
-        if (currentToken.equals(OPEN_SQUARE_BRACKET_SYMBOL)) {
-            getNextToken();
-            compileExpression();
-            writer.writePush(symbolTable.kindOf(token), symbolTable.indexOf(token));
-            writer.WriteArithmetic(opSymbolList[0]);
-            writer.writePop(POINTR_SEG, 1);
-            writer.writePush(THAT_SEG, 0);
-            getNextToken();
-
-        } else if (currentToken.equals(OPEN_BRACKET_SYMBOL)) {
-            nArgs = 1;
-            writer.writePush(POINTR_SEG, 0);
-            nArgs = nArgs + compileExpressionList();
-            writer.writeCall(currentClass + DOT_SYMBOL + token, nArgs);
-            getNextToken();
-
-        } else if (currentToken.equals(DOT_SYMBOL)) {
-
-            String currentSubroutine;
-            nArgs = 0;
-            if (symbolTable.kindOf(token) == null) {
-                currentSubroutine = token + currentToken;
-            } else {
-                int idx = symbolTable.indexOf(token);
-                writer.writePush(symbolTable.kindOf(token), idx);
-                currentSubroutine = symbolTable.typeOf(token) + currentToken;
-                nArgs++;
+    private void compileStatements(SyntaxTree tree, int node) throws IOException {
+        for (int child = tree.firstChild(node); child != SyntaxTree.NONE; child = tree.nextSibling(node, child)) {
+            switch (tree.kind(child)) {
+                case SyntaxTree.LET:
+                    compileLet(tree, child);
+                    break;
+                case SyntaxTree.IF:
+                    compileIf(tree, child);
+                    break;
+                case SyntaxTree.WHILE:
+                    compileWhile(tree, child);
+                    break;
+                case SyntaxTree.DO:
+                    compileDo(tree, child);
+                    break;
+                default:
+                    compileReturn(tree, child);
+                    break;
             }
-            getNextToken();
-            currentSubroutine += currentToken;
-            getNextToken();
-            nArgs = nArgs + compileExpressionList();
-            writer.writeCall(currentSubroutine, nArgs);
-            getNextToken();
-        } else {
-            Integer idx = symbolTable.indexOf(token);
-            writer.writePush(symbolTable.kindOf(token), idx);
         }
     }
 
     /**
-     * helper for compileExpressionList.
+     * Compiles a do statement.
      *
+     * @param tree - the tree
+     * @param node - the statement
      * @throws IOException
      */
-    private int compileExpressionListHelper() throws IOException {
-        int numberOfExpressions;
-        numberOfExpressions = 0;
-
-        if (currentToken.equals(CLOSE_BRACKET_SYMBOL) && !currTokenType.equals(STRING_CONST_TAG)) {
-            return numberOfExpressions;
-        }
-        numberOfExpressions++;
-        compileExpression();
-        if (currentToken.equals(COMMA_SYMBOL)) {
-            do {
-                numberOfExpressions++;
-                getNextToken();
-                compileExpression();
-            } while (currentToken.equals(COMMA_SYMBOL));
-        }
-        return numberOfExpressions;
+    private void compileDo(SyntaxTree tree, int node) throws IOException {
+        compileTerm(tree, tree.firstChild(node)).write(writer);
+        writer.writePop(VMWriter.Segment.TEMP, 0);
     }
 
     /**
-     * helper for compile if.
+     * Compiles a let statement.
      *
+     * @param tree - the tree
+     * @param node - the statement
      * @throws IOException
      */
-    private void compileIfHelper() throws IOException {
-        int numberOflabel;
-        numberOflabel = ifCounter;
-        ifCounter = ifCounter + 1;
-
-        String prevv = currentToken;
-
-        for (int i = 0; i < 2; i++) {
-            getNextToken();
-        }
-        String curr = currentToken;
-
-        compileExpression();
-        writer.WriteIf(IF_CONDI_TRUE + numberOflabel);
-        writer.WriteGoto(IF_CONDI_FALSE + numberOflabel);
-        writer.WriteLabel(IF_CONDI_TRUE + numberOflabel);
-        for (int i = 0; i < 2; i++) {
-            getNextToken();
-        }
-
-        compileStatements();
-        getNextToken();
-        switch (currentToken) {
-            case ELSE_TAG:
-                writer.WriteGoto(IF_END_STR + numberOflabel);
-                writer.WriteLabel(IF_CONDI_FALSE + numberOflabel);
-                for (int i = 0; i < 2; i++) {
-                    getNextToken();
-                }
-                compileStatements();
-                getNextToken();
-                writer.WriteLabel(IF_END_STR + numberOflabel);
-                break;
-            default:
-                writer.WriteLabel(IF_CONDI_FALSE + numberOflabel);
-                break;
+    private void compileLet(SyntaxTree tree, int node) throws IOException {
+        int name = tree.firstChild(node);
+        int expression = tree.nextSibling(node, name);
+        int value = tree.nextSibling(node, expression);
+        SymbolTable.Variable varible = symbolTable.getVariable(tree.text(name));
+        if (value != SyntaxTree.NONE) {
+            compileExpression(tree, expression);
+            writer.writePush(varible.getKind().getSegment(), varible.getIndex());
+            writer.WriteArithmetic(VMWriter.Command.ADD);
+            compileExpression(tree, value);
+            writer.writePop(VMWriter.Segment.TEMP, 0);
+            writer.writePop(VMWriter.Segment.POINTER, 1);
+            writer.writePush(VMWriter.Segment.TEMP, 0);
+            writer.writePop(VMWriter.Segment.THAT, 0);
+        } else {
+            compileExpression(tree, expression);
+            writer.writePop(varible.getKind().getSegment(), varible.getIndex());
         }
     }
 
     /**
-     * helper for compile return.
+     * Compiles a while statement.
      *
+     * @param tree - the tree
+     * @param node - the statement
      * @throws IOException
      */
-    private void compileReturnHelper() throws IOException {
-
-        switch (currentToken) {
-            case SEMICOLON:
-                writer.writePush(CONST_SEG, 0);
-                break;
-            default:
-                compileExpression();
-                break;
-        }
-        writer.writeReturn();
-    }
-
-    /**
-     * helper for copileWhile
-     */
-    private void compileWhileHelper() throws IOException {
+    private void compileWhile(SyntaxTree tree, int node) throws IOException {
         int numberOflabel;
         numberOflabel = whileCounter;
         whileCounter = whileCounter + 1;
-        getNextToken();
-        writer.WriteLabel(LOOP_BEGINS_STR + numberOflabel);
-        getNextToken();
-        compileExpression();
-        writer.WriteArithmetic(TILDE_SYMBOL);
-        writer.WriteIf(LOOP_ENDS_STR + numberOflabel);
-        for (int i = 0; i < 2; i++) {
-            getNextToken();
-        }
-        compileStatements();
-        writer.WriteGoto(LOOP_BEGINS_STR + numberOflabel);
-        writer.WriteLabel(LOOP_ENDS_STR + numberOflabel);
-    }
-
-    /**
-     * helper for compileLet
-     */
-    private void compileLetHelper() throws IOException {
-        int bool = 0;
-
-        String varible = currentToken;
-        getNextToken();
-        switch (currentToken) {
-            case OPEN_SQUARE_BRACKET_SYMBOL:
-                bool = 1;
-                getNextToken();
-                compileExpression();
-                writer.writePush(symbolTable.kindOf(varible), symbolTable.indexOf(varible));
-                writer.WriteArithmetic(ADD_SYMBOL);
-                getNextToken();
-                break;
-        }
-        getNextToken();
-        compileExpression();
-        switch (bool) {
-            case 1:
-                writer.writePop(TEMP_SEG, 0);
-                writer.writePop(POINTR_SEG, 1);
-                writer.writePush(TEMP_SEG, 0);
-                writer.writePop(THAT_SEG, 0);
-                break;
-            default:
-                writer.writePop(symbolTable.kindOf(varible), symbolTable.indexOf(varible));
-                break;
-        }
+        int condition = tree.firstChild(node);
+        writer.WriteLabel(LOOP_BEGINS_STR, numberOflabel);
+        compileExpression(tree, condition);
+        writer.WriteArithmetic(VMWriter.Command.NOT);
+        writer.WriteIf(LOOP_ENDS_STR, numberOflabel);
+        compileStatements(tree, tree.nextSibling(node, condition));
+        writer.WriteGoto(LOOP_BEGINS_STR, numberOflabel);
+        writer.WriteLabel(LOOP_ENDS_STR, numberOflabel);
     }
 
     /**
-     * helper for compileDo.
+     * Compiles a return statement.
+     *
+     * @param tree - the tree
+     * @param node - the statement
+     * @throws IOException
      */
-    private void compileDoHelper() throws IOException {
-        String currentSubroutine;
-        int nArgs = 0;
-        getNextToken();
-        if (symbolTable.kindOf(currentToken) == null) {
-            currentSubroutine = currentToken;
+    private void compileReturn(SyntaxTree tree, int node) throws IOException {
+        int expression = tree.firstChild(node);
+        if (expression == SyntaxTree.NONE) {
+            writer.writePush(VMWriter.Segment.CONSTANT, 0);
         } else {
-            writer.writePush(symbolTable.kindOf(currentToken), symbolTable.indexOf(currentToken));
-            currentSubroutine = symbolTable.typeOf(currentToken);
-            nArgs++;
+            compileExpression(tree, expression);
         }
-        getNextToken();
-        switch (currentToken) {
-            case DOT_SYMBOL:
-                getNextToken();
-                currentSubroutine += DOT_SYMBOL + currentToken;
-                getNextToken();
-                break;
-            default:
-                writer.writePush(POINTR_SEG, 0);
-                nArgs++;
-                currentSubroutine = currentClass + DOT_SYMBOL + currentSubroutine;
-                break;
-        }
-        nArgs = nArgs + compileExpressionList();
-        writer.writeCall(currentSubroutine, nArgs);
-
-        writer.writePop(TEMP_SEG, 0);
-        getNextToken();
-
+        writer.writeReturn();
     }
 
-
     /**
-     * helper for compileStatements.
+     * Compiles an if statement, possibly with a trailing else clause.
+     *
+     * @param tree - the tree
+     * @param node - the statement
+     * @throws IOException
      */
-    private void compileStatementHelper() throws IOException {
-        boolean isStatement = true;
-        while (isStatement) {
-            if (currentToken.equals(IF_STR)) {
-                compileIf();
-
-            } else if (currentToken.equals(WHILE_STR)) {
-                compileWhile();
-                getNextToken();
-
-            } else if (currentToken.equals(LET_STR)) {
-                compileLet();
-                getNextToken();
-
-            } else if (currentToken.equals(DO_STR)) {
-                compileDo();
-                getNextToken();
-
-            } else if (currentToken.equals(RETURN_STR)) {
-                compileReturn();
-                getNextToken();
-            } else {
-                isStatement = false;
-            }
+    private void compileIf(SyntaxTree tree, int node) throws IOException {
+        int numberOflabel;
+        numberOflabel = ifCounter;
+        ifCounter = ifCounter + 1;
+        int condition = tree.firstChild(node);
+        int statements = tree.nextSibling(node, condition);
+        int elseStatements = tree.nextSibling(node, statements);
+
+        compileExpression(tree, condition);
+        writer.WriteIf(IF_CONDI_TRUE, numberOflabel);
+        writer.WriteGoto(IF_CONDI_FALSE, numberOflabel);
+        writer.WriteLabel(IF_CONDI_TRUE, numberOflabel);
+        compileStatements(tree, statements);
+        if (elseStatements != SyntaxTree.NONE) {
+            writer.WriteGoto(IF_END_STR, numberOflabel);
+            writer.WriteLabel(IF_CONDI_FALSE, numberOflabel);
+            compileStatements(tree, elseStatements);
+            writer.WriteLabel(IF_END_STR, numberOflabel);
+        } else {
+            writer.WriteLabel(IF_CONDI_FALSE, numberOflabel);
         }
     }
 
     /**
-     * helper for compileVarDec.
+     * Compiles an expression.
+     *
+     * @param tree - the tree
+     * @param node - the expression
+     * @throws IOException
      */
-    private void compileVarDecHelper() throws IOException {
-        String kind = currentToken;
-        String name;
-        String type;
-        getNextToken();
-        type = currentToken;
-        getNextToken();
-        name = currentToken;
-        symbolTable.define(name, type, kind);
-        getNextToken();
-        decHelper(type, kind);
+    private void compileExpression(SyntaxTree tree, int node) throws IOException {
+        parseExpression(tree, node).write(writer);
     }
 
     /**
-     * helper for compileParameterList.
+     * builds an expression into a simplified tree, without writing it. the operators of Jack have no
+     * precedence, so every operator applies to the expression on its left and the term on its right.
+     *
+     * @param tree - the tree
+     * @param node - the expression
+     * @return the expression
      */
-    private void compileParameterListHelper() throws IOException {
-
-        String name;
-        String type;
-
-        if (currentToken.equals(CLOSE_BRACKET_SYMBOL)) {
-        } else {
-            type = currentToken;
-            getNextToken();
-            name = currentToken;
-            symbolTable.define(name, type, ARGUMENT_STR);
-            getNextToken();
-            if (currentToken.equals(COMMA_SYMBOL)) {
-                do {
-                    getNextToken();
-                    type = currentToken;
-                    getNextToken();
-                    name = currentToken;
-                    symbolTable.define(name, type, ARGUMENT_STR);
-                    getNextToken();
-                } while (currentToken.equals(COMMA_SYMBOL));
-            }
+    private Expression parseExpression(SyntaxTree tree, int node) {
+        int term = tree.firstChild(node);
+        Expression expression = compileTerm(tree, term);
+        for (int op = tree.nextSibling(node, term); op != SyntaxTree.NONE; op = tree.nextSibling(node, term)) {
+            term = tree.nextSibling(node, op);
+            expression = Expression.binary((char) tree.value(op), expression, compileTerm(tree, term));
         }
+        return expression;
     }
 
-
     /**
-     * helper for compileSubroutine;
+     * Compiles a possibly empty comma separated list of expressions.
+     *
+     * @param tree - the tree
+     * @param node - the expression list
+     * @return the expressions of the list
      */
-    private void compileSubroutineHelper() throws IOException {
-
-        String tempType;
-        tempType = currentToken;
-
-        if (tempType.equals(METHOD_SRT)) {
-            symbolTable.define(THIS_SEG, currentClass, ARGUMENT_STR);
-        }
-        for (int i = 0; i < 2; i++) {
-            getNextToken();
-        }
-        String subroutineName;
-        subroutineName = currentClass + DOT_SYMBOL + currentToken;
-        getNextToken();
-        compileParameterList();
-        for (int i = 0; i < 2; i++) {
-            getNextToken();
-        }
-        if (currentToken.equals(VAR_STR)) {
-            do {
-                compileVarDec();
-                getNextToken();
-            } while (currentToken.equals(VAR_STR));
+    private List<Expression> compileExpressionList(SyntaxTree tree, int node) {
+        List<Expression> expressions = new ArrayList<>();
+        for (int child = tree.firstChild(node); child != SyntaxTree.NONE; child = tree.nextSibling(node, child)) {
+            expressions.add(parseExpression(tree, child));
         }
-        writer.writeFunction(subroutineName, symbolTable.varCount(VAR_STR));
-        switch (tempType) {
-            case CONTRC_STR:
-                writer.writePush(CONST_SEG, symbolTable.varCount(FIELD_STR));
-                writer.writeCall(MELOCK_STR, 1);
-                writer.writePop(POINTR_SEG, 0);
-                break;
-            case METHOD_SRT:
-                writer.writePush(ARGUMENT_STR, 0);
-                writer.writePop(POINTR_SEG, 0);
-
-                break;
-        }
-        compileStatements();
-    }
-
-    /**
-     * helepr for compileClassVarDec.
-     */
-    private void compileClassVarDecHelper() throws IOException {
-        String variableName;
-        String variableType;
-        String variableKind;
-        variableKind = currentToken;
-        getNextToken();
-        variableType = currentToken;
-        getNextToken();
-        variableName = currentToken;
-        symbolTable.define(variableName, variableType, variableKind);
-        getNextToken();
-        decHelper(variableType, variableKind);
-
+        return expressions;
     }
 
     /**
-     * dec helper
+     * Compiles a term.
      *
-     * @param type
-     * @param kind
-     * @throws IOException
-     */
-    void decHelper(String type, String kind) throws IOException {
-        if (currentToken.equals(COMMA_SYMBOL)) {
-            do {
-                getNextToken();
-                String name = currentToken;
-                symbolTable.define(name, type, kind);
-                getNextToken();
-            } while (currentToken.equals(COMMA_SYMBOL));
+     * @param tree - the tree
+     * @param node - the term
+     * @return the term
+     */
+    private Expression compileTerm(SyntaxTree tree, int node) {
+        switch (tree.kind(node)) {
+            case SyntaxTree.INT_CONST:
+                return Expression.constant(tree.value(node));
+            case SyntaxTree.STRING_CONST:
+                return compileString(tree.text(node));
+            case SyntaxTree.KEYWORD_CONST:
+                if (tree.text(node).equals(TURE_STR)) {
+                    return Expression.constant(-1);
+                } else if (tree.text(node).equals(THIS_SEG)) {
+                    return Expression.self();
+                }
+                return Expression.constant(0); // false and null
+            case SyntaxTree.VARIABLE:
+                return Expression.variable(symbolTable.getVariable(tree.text(node)));
+            case SyntaxTree.ARRAY_ENTRY:
+                return Expression.arrayEntry(symbolTable.getVariable(tree.text(node)),
+                        parseExpression(tree, tree.firstChild(node)));
+            case SyntaxTree.CALL:
+                return compileCall(tree, node);
+            case SyntaxTree.PAREN:
+                return parseExpression(tree, tree.firstChild(node));
+            default:
+                return Expression.unary((char) tree.value(node), compileTerm(tree, tree.firstChild(node)));
         }
     }
 
     /**
-     * helper for compileClass;
-     */
-    private void compileClassHelper() throws IOException {
-
-        if (currentToken.equals(STATIC_STR) || currentToken.equals(FIELD_STR)) {
-            do {
-                compileClassVarDec();
-                getNextToken();
-            }
-            while (currentToken.equals(STATIC_STR) || currentToken.equals(FIELD_STR));
-        }
-        if (currentToken.equals(CONTRC_STR) || currentToken.equals(FUNC_STR) || currentToken.equals(METHOD_SRT)) {
-            do {
-                compileSubroutine();
-                getNextToken();
-
+     * Compiles a string constant, from the string pool of the class if it is there. the first use of a
+     * candidate of the pool adds it to the pool, unless the pool is full, and any other string constant is
+     * built where it is used.
+     *
+     * @param text - the string constant
+     * @return the string
+     */
+    private Expression compileString(String text) {
+        SymbolTable.Variable pooled = stringPool.get(text);
+        if (pooled == null) {
+            if (!poolCandidates.contains(text) || stringPool.size() == MAX_POOL_SIZE) {
+                return Expression.string(text);
             }
-            while (currentToken.equals(CONTRC_STR) || currentToken.equals(FUNC_STR) || currentToken.equals(METHOD_SRT));
+            String name = STRING_POOL_PREFIX + stringPool.size();
+            symbolTable.define(name, STRING_TYPE, SymbolTable.Kind.STATIC);
+            pooled = symbolTable.getVariable(name);
+            stringPool.put(text, pooled);
         }
+        return Expression.pooledString(pooled, currentClass + DOT_SYMBOL + POOL_INIT_STR, poolCounter++);
     }
 
     /**
-     * compile Expression helper function.
+     * Compiles a subroutine call. a call without a qualifier is a method of the current object, a call
+     * qualified by a variable is a method of that variable, and any other call is a function or a
+     * constructor of the qualifying class.
      *
-     * @throws IOException
+     * @param tree - the tree
+     * @param node - the call
+     * @return the call
      */
-    private void compileExpressionHelper() throws IOException {
-
-        while (Arrays.asList(opSymbolList).contains(currentToken)) {
-            String opString = currentToken;
-            getNextToken();
-            compileTerm();
-            if (opString.equals(opSymbolList[2])) {
-                writer.writeCall(MULTI_FUNC, 2);
-
-            } else if (opString.equals(opSymbolList[3])) {
-                writer.writeCall(DIV_FUNC, 2);
-
+    private Expression compileCall(SyntaxTree tree, int node) {
+        int name = tree.firstChild(node);
+        String qualifier = tree.textOrNull(node);
+        String currentSubroutine;
+        List<Expression> arguments = new ArrayList<>();
+        if (qualifier == null) {
+            arguments.add(Expression.self());
+            currentSubroutine = currentClass + DOT_SYMBOL + tree.text(name);
+        } else {
+            SymbolTable.Variable variable = symbolTable.getVariable(qualifier);
+            if (variable == null) {
+                currentSubroutine = qualifier + DOT_SYMBOL + tree.text(name);
             } else {
-                writer.WriteArithmetic(opString);
+                arguments.add(Expression.variable(variable));
+                currentSubroutine = variable.getType() + DOT_SYMBOL + tree.text(name);
             }
         }
+        arguments.addAll(compileExpressionList(tree, tree.nextSibling(node, name)));
+        return Expression.call(currentSubroutine, arguments);
     }
 
 }
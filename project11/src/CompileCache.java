@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * this class represent an on disk cache of compiled classes. each entry is the VM code of a class, in a
+ * file named by the SHA-256 hash of the Jack source and of all the class files of the compiler, so a
+ * change of the compiler misses all the entries it did not write. the entries are copied with
+ * FileChannel.transferTo, without passing through the heap. the cache is bounded by a size in bytes: the
+ * last modified time of an entry is the time it was last used, and the entries that were used least
+ * recently are evicted first. many threads and processes may use the same cache, since every entry is written into a
+ * temporary file and moved into place at once.
+ */
+public class CompileCache {
+
+    /*********************** Constants **********************/
+    private static final String ENTRY_SUFFIX = ".vm";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String CLASS_SUFFIX = ".class";
+
+    /*********************** Data Members ******************/
+    private final Path directory;
+    private final long maxSize;
+    private final byte[] compilerHash;
+
+
+    /**
+     * Constructor of class, creates the cache directory if it does not exist
+     *
+     * @param directory - directory of the cache entries
+     * @param maxSize   - the maximal size of all the entries, in bytes
+     * @throws IOException
+     */
+    public CompileCache(Path directory, long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        compilerHash = hashCompiler();
+    }
+
+    /**
+     * @param source     - the bytes of a Jack class
+     * @param stringPool - true if the class is compiled with its string pool
+     * @return the key of the class in the cache
+     * @throws IOException
+     */
+    String keyOf(byte[] source, boolean stringPool) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(compilerHash);
+        digest.update((byte) (stringPool ? 1 : 0));
+        byte[] hash = digest.digest(source);
+        StringBuilder key = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * writes the VM code of a class from the cache, if it is there, and marks the entry as used.
+     *
+     * @param key    - the key of the class
+     * @param vmFile - the file to write the VM code into
+     * @return true on a hit, false if the class is not in the cache
+     * @throws IOException
+     */
+    boolean get(String key, Path vmFile) throws IOException {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        try (FileChannel in = FileChannel.open(entry, StandardOpenOption.READ)) {
+            try (FileChannel out = FileChannel.open(vmFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                transfer(in, out);
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // evicted by another build after it was read
+        }
+        return true;
+    }
+
+    /**
+     * keeps the VM code of a compiled class in the cache.
+     *
+     * @param key    - the key of the class
+     * @param vmFile - the file of the VM code
+     * @throws IOException
+     */
+    void put(String key, Path vmFile) throws IOException {
+        Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+        try {
+            try (FileChannel in = FileChannel.open(vmFile, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                transfer(in, out);
+            }
+            Files.move(temp, directory.resolve(key + ENTRY_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * deletes the entries that were used least recently, until all the entries fit in the size of the
+     * cache.
+     *
+     * @throws IOException
+     */
+    void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path entry : files) {
+                entries.add(entry);
+                size += Files.size(entry);
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        List<FileTime> times = new ArrayList<>();
+        for (Path entry : entries) {
+            times.add(Files.getLastModifiedTime(entry));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(times::get));
+        for (int i = 0; i < order.size() && size > maxSize; i++) {
+            Path entry = entries.get(order.get(i));
+            size -= Files.size(entry);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    /**
+     * copies a whole file from one channel to another, by the operating system.
+     *
+     * @param in  - channel to copy from, at its start
+     * @param out - channel to copy into
+     * @throws IOException
+     */
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    /**
+     * hashes the compiler, as it was loaded: every class file under the directory of the classes of the
+     * compiler, by their names in order, or the whole jar file if the compiler is in a jar.
+     *
+     * @return the hash of the compiler
+     * @throws IOException if the location of the compiler is unknown
+     */
+    private static byte[] hashCompiler() throws IOException {
+        CodeSource codeSource = JackCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            throw new IOException("unknown location of the compiler classes");
+        }
+        Path location;
+        try {
+            location = Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("unknown location of the compiler classes: " + codeSource.getLocation(), e);
+        }
+        MessageDigest digest = newDigest();
+        if (!Files.isDirectory(location)) {
+            digest.update(Files.readAllBytes(location));
+            return digest.digest();
+        }
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(location)) {
+            classFiles = files.filter(file -> file.toString().endsWith(CLASS_SUFFIX) && Files.isRegularFile(file))
+                    .sorted().collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            digest.update(location.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(classFile));
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @return a new SHA-256 digest
+     * @throws IOException if the algorithm is not available
+     */
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+
+}
@@ -0,0 +1,457 @@
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * this class represent a Jack expression as a tree, so it can be simplified before its VM code is
+ * written. every tree is simplified while it is built, from its leaves up:
+ * 1. operators over constants are computed by the compiler, in the 16 bit arithmetic of the Hack
+ * machine, and true, false and null are constants too.
+ * 2. operations with an identity constant are dropped, such as x + 0, x * 1, x / 1, x | 0 and x & -1,
+ * and operations with an absorbing constant, such as x * 0, become that constant if x has no side
+ * effects.
+ * 3. constants are moved to the right of + * & |, and merged into a sum or a product: (x + 1) + 2 is
+ * x + 3, and x - 1 is x + -1.
+ * when the code is written, a multiplication by a power of two is written as doublings of the other
+ * operand instead of a call to Math.multiply. a division by a power of two is still a call to
+ * Math.divide, since the Hack machine has no right shift to replace it with.
+ * a string constant is either built into a new string where it is used, or read from the string pool
+ * of its class, a static variable that the init function of the class fills on the first use.
+ */
+public class Expression {
+
+    /*********************** Constants **********************/
+    private static final String MULTI_FUNC = "Math.multiply";
+    private static final String DIV_FUNC = "Math.divide";
+    private static final String STR_CONSTRACTOR = "String.new";
+    private static final String STR_APPEND = "String.appendChar";
+    private static final String POOL_READY_LABEL = "STRING_POOL_READY";
+    // the temp register that holds a value while it is doubled
+    private static final int DOUBLE_TEMP_INDEX = 1;
+    private static final int MIN_VALUE = Short.MIN_VALUE;
+
+    /**
+     * the kinds of nodes in an expression tree.
+     */
+    private enum Type {
+        CONSTANT, VARIABLE, THIS, STRING, POOLED_STRING, ARRAY_ENTRY, CALL, UNARY, BINARY
+    }
+
+    /*********************** Data Members ******************/
+    private final Type type;
+    private int value;
+    private SymbolTable.Variable variable;
+    private String text;
+    private char op;
+    private Expression left;
+    private Expression right;
+    private List<Expression> arguments;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param type - type of the node
+     */
+    private Expression(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * @param value - an integer
+     * @return the constant of the integer, as a 16 bit word
+     */
+    static Expression constant(int value) {
+        Expression expression = new Expression(Type.CONSTANT);
+        expression.value = (short) value;
+        return expression;
+    }
+
+    /**
+     * @param variable - a variable of the symbol table
+     * @return the value of the variable
+     */
+    static Expression variable(SymbolTable.Variable variable) {
+        Expression expression = new Expression(Type.VARIABLE);
+        expression.variable = variable;
+        return expression;
+    }
+
+    /**
+     * @return the current object, this
+     */
+    static Expression self() {
+        return new Expression(Type.THIS);
+    }
+
+    /**
+     * @param text - the text of a string constant
+     * @return a new string of the text
+     */
+    static Expression string(String text) {
+        Expression expression = new Expression(Type.STRING);
+        expression.text = text;
+        return expression;
+    }
+
+    /**
+     * @param pooled - the static variable that holds the string, or 0 before the string is built
+     * @param init   - full name of the function that builds the string pool of the class, Xxx.$init
+     * @param label  - number of the label that skips the call to the init function
+     * @return the string constant from the string pool
+     */
+    static Expression pooledString(SymbolTable.Variable pooled, String init, int label) {
+        Expression expression = new Expression(Type.POOLED_STRING);
+        expression.variable = pooled;
+        expression.text = init;
+        expression.value = label;
+        return expression;
+    }
+
+    /**
+     * @param array - the variable of the array
+     * @param index - the index in the array
+     * @return the entry array[index]
+     */
+    static Expression arrayEntry(SymbolTable.Variable array, Expression index) {
+        Expression expression = new Expression(Type.ARRAY_ENTRY);
+        expression.variable = array;
+        expression.left = index;
+        return expression;
+    }
+
+    /**
+     * @param name      - full name of the subroutine, Xxx.yyy
+     * @param arguments - the arguments, with the object first for a method
+     * @return the result of the call
+     */
+    static Expression call(String name, List<Expression> arguments) {
+        Expression expression = new Expression(Type.CALL);
+        expression.text = name;
+        expression.arguments = arguments;
+        return expression;
+    }
+
+    /**
+     * @param op      - '-' or '~'
+     * @param operand - the operand
+     * @return the simplified operation
+     */
+    static Expression unary(char op, Expression operand) {
+        if (operand.type == Type.CONSTANT) {
+            return constant(op == '-' ? -operand.value : ~operand.value);
+        }
+        if (operand.type == Type.UNARY && operand.op == op) {
+            return operand.left; // - - x and ~ ~ x
+        }
+        Expression expression = new Expression(Type.UNARY);
+        expression.op = op;
+        expression.left = operand;
+        return expression;
+    }
+
+    /**
+     * @param op    - one of + - * / & | < > =
+     * @param left  - the left operand, evaluated first
+     * @param right - the right operand
+     * @return the simplified operation
+     */
+    static Expression binary(char op, Expression left, Expression right) {
+        if (left.type == Type.CONSTANT && right.type == Type.CONSTANT && isFoldable(op, left.value, right.value)) {
+            return constant(fold(op, left.value, right.value));
+        }
+        switch (op) {
+            case '-':
+                if (right.type == Type.CONSTANT) {
+                    return binary('+', left, constant(-right.value));
+                }
+                if (left.isConstant(0)) {
+                    return unary('-', right);
+                }
+                break;
+            case '+':
+                if (left.type == Type.CONSTANT) {
+                    return binary(op, right, left);
+                }
+                if (right.isConstant(0)) {
+                    return left;
+                }
+                if (right.type == Type.CONSTANT && left.isOpWithConstant(op)) {
+                    return binary(op, left.left, constant(left.right.value + right.value));
+                }
+                break;
+            case '*':
+                if (left.type == Type.CONSTANT) {
+                    return binary(op, right, left);
+                }
+                if (right.isConstant(1)) {
+                    return left;
+                }
+                if (right.isConstant(-1)) {
+                    return unary('-', left);
+                }
+                if (right.isConstant(0) && left.isPure()) {
+                    return right;
+                }
+                if (right.type == Type.CONSTANT && left.isOpWithConstant(op)) {
+                    return binary(op, left.left, constant(left.right.value * right.value));
+                }
+                break;
+            case '/':
+                if (right.isConstant(1)) {
+                    return left;
+                }
+                if (right.isConstant(-1)) {
+                    return unary('-', left);
+                }
+                break;
+            case '&':
+                if (left.type == Type.CONSTANT) {
+                    return binary(op, right, left);
+                }
+                if (right.isConstant(-1)) {
+                    return left;
+                }
+                if (right.isConstant(0) && left.isPure()) {
+                    return right;
+                }
+                break;
+            case '|':
+                if (left.type == Type.CONSTANT) {
+                    return binary(op, right, left);
+                }
+                if (right.isConstant(0)) {
+                    return left;
+                }
+                if (right.isConstant(-1) && left.isPure()) {
+                    return right;
+                }
+                break;
+        }
+        Expression expression = new Expression(Type.BINARY);
+        expression.op = op;
+        expression.left = left;
+        expression.right = right;
+        return expression;
+    }
+
+    /**
+     * writes the VM code that pushes the value of the expression.
+     *
+     * @param writer - writer of the VM code
+     * @throws IOException
+     */
+    void write(VMWriter writer) throws IOException {
+        switch (type) {
+            case CONSTANT:
+                if (value >= 0) {
+                    writer.writePush(VMWriter.Segment.CONSTANT, value);
+                } else {
+                    // push constant takes 0 to 32767, and ~value is in that range
+                    writer.writePush(VMWriter.Segment.CONSTANT, ~value);
+                    writer.WriteArithmetic(VMWriter.Command.NOT);
+                }
+                break;
+            case VARIABLE:
+                writer.writePush(variable.getKind().getSegment(), variable.getIndex());
+                break;
+            case THIS:
+                writer.writePush(VMWriter.Segment.POINTER, 0);
+                break;
+            case STRING:
+                writer.writePush(VMWriter.Segment.CONSTANT, text.length());
+                writer.writeCall(STR_CONSTRACTOR, 1);
+                for (int i = 0; i < text.length(); i++) {
+                    writer.writePush(VMWriter.Segment.CONSTANT, text.charAt(i));
+                    writer.writeCall(STR_APPEND, 2);
+                }
+                break;
+            case POOLED_STRING:
+                writer.writePush(variable.getKind().getSegment(), variable.getIndex());
+                writer.WriteIf(POOL_READY_LABEL, value);
+                writer.writeCall(text, 0);
+                writer.writePop(VMWriter.Segment.TEMP, 0);
+                writer.WriteLabel(POOL_READY_LABEL, value);
+                writer.writePush(variable.getKind().getSegment(), variable.getIndex());
+                break;
+            case ARRAY_ENTRY:
+                left.write(writer);
+                writer.writePush(variable.getKind().getSegment(), variable.getIndex());
+                writer.WriteArithmetic(VMWriter.Command.ADD);
+                writer.writePop(VMWriter.Segment.POINTER, 1);
+                writer.writePush(VMWriter.Segment.THAT, 0);
+                break;
+            case CALL:
+                for (Expression argument : arguments) {
+                    argument.write(writer);
+                }
+                writer.writeCall(text, arguments.size());
+                break;
+            case UNARY:
+                left.write(writer);
+                writer.WriteArithmetic(op == '-' ? VMWriter.Command.NEG : VMWriter.Command.NOT);
+                break;
+            default:
+                writeBinary(writer);
+                break;
+        }
+    }
+
+    /**
+     * writes the VM code of a binary operation.
+     *
+     * @param writer - writer of the VM code
+     * @throws IOException
+     */
+    private void writeBinary(VMWriter writer) throws IOException {
+        if (op == '+' && right.type == Type.CONSTANT && right.value < 0 && right.value != MIN_VALUE) {
+            left.write(writer);
+            writer.writePush(VMWriter.Segment.CONSTANT, -right.value);
+            writer.WriteArithmetic(VMWriter.Command.SUB);
+            return;
+        }
+        if (op == '*' && right.type == Type.CONSTANT && Integer.bitCount(Math.abs(right.value)) == 1) {
+            writeDoublings(writer, Integer.numberOfTrailingZeros(Math.abs(right.value)));
+            if (right.value < 0) {
+                writer.WriteArithmetic(VMWriter.Command.NEG);
+            }
+            return;
+        }
+        left.write(writer);
+        right.write(writer);
+        switch (op) {
+            case '*':
+                writer.writeCall(MULTI_FUNC, 2);
+                break;
+            case '/':
+                writer.writeCall(DIV_FUNC, 2);
+                break;
+            default:
+                writer.WriteArithmetic(command(op));
+                break;
+        }
+    }
+
+    /**
+     * writes the left operand multiplied by 2^shift, by adding it to itself shift times. a variable
+     * is pushed twice to be doubled, any other value is kept in a temp register and pushed from it.
+     *
+     * @param writer - writer of the VM code
+     * @param shift  - the power of two, at least 1
+     * @throws IOException
+     */
+    private void writeDoublings(VMWriter writer, int shift) throws IOException {
+        left.write(writer);
+        if (left.type == Type.VARIABLE || left.type == Type.THIS) {
+            left.write(writer);
+            writer.WriteArithmetic(VMWriter.Command.ADD);
+            shift--;
+        }
+        for (; shift > 0; shift--) {
+            writer.writePop(VMWriter.Segment.TEMP, DOUBLE_TEMP_INDEX);
+            writer.writePush(VMWriter.Segment.TEMP, DOUBLE_TEMP_INDEX);
+            writer.writePush(VMWriter.Segment.TEMP, DOUBLE_TEMP_INDEX);
+            writer.WriteArithmetic(VMWriter.Command.ADD);
+        }
+    }
+
+    /**
+     * @return true if the expression has no side effects, so it can be dropped. calls may have side
+     * effects, a division may fail, and a string constant may allocate strings.
+     */
+    private boolean isPure() {
+        switch (type) {
+            case CONSTANT:
+            case VARIABLE:
+            case THIS:
+                return true;
+            case ARRAY_ENTRY:
+            case UNARY:
+                return left.isPure();
+            case BINARY:
+                return op != '/' && left.isPure() && right.isPure();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param constant - a 16 bit word
+     * @return true if the expression is that constant
+     */
+    private boolean isConstant(int constant) {
+        return type == Type.CONSTANT && value == constant;
+    }
+
+    /**
+     * @param operator - an operator
+     * @return true if the expression applies that operator to a constant on its right
+     */
+    private boolean isOpWithConstant(char operator) {
+        return type == Type.BINARY && op == operator && right.type == Type.CONSTANT;
+    }
+
+    /**
+     * @param op - a binary operator
+     * @param x  - the left constant
+     * @param y  - the right constant
+     * @return true if the operation can be computed by the compiler. a division is left to run time if
+     * it fails, by zero, or if an operand has no absolute value in 16 bits.
+     */
+    private static boolean isFoldable(char op, int x, int y) {
+        return op != '/' || (y != 0 && x != MIN_VALUE && y != MIN_VALUE);
+    }
+
+    /**
+     * @param op - a binary operator
+     * @param x  - the left constant
+     * @param y  - the right constant
+     * @return the result of the operation, true is -1 and false is 0
+     */
+    private static int fold(char op, int x, int y) {
+        switch (op) {
+            case '+':
+                return x + y;
+            case '-':
+                return x - y;
+            case '*':
+                return x * y;
+            case '/':
+                return x / y;
+            case '&':
+                return x & y;
+            case '|':
+                return x | y;
+            case '<':
+                return x < y ? -1 : 0;
+            case '>':
+                return x > y ? -1 : 0;
+            default:
+                return x == y ? -1 : 0;
+        }
+    }
+
+    /**
+     * @param op - a binary operator other than * and /
+     * @return the VM command of the operator
+     */
+    private static VMWriter.Command command(char op) {
+        switch (op) {
+            case '+':
+                return VMWriter.Command.ADD;
+            case '-':
+                return VMWriter.Command.SUB;
+            case '&':
+                return VMWriter.Command.AND;
+            case '|':
+                return VMWriter.Command.OR;
+            case '<':
+                return VMWriter.Command.LT;
+            case '>':
+                return VMWriter.Command.GT;
+            default:
+                return VMWriter.Command.EQ;
+        }
+    }
+
+
+}
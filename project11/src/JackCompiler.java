@@ -1,6 +1,18 @@
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The compile program operates on a given source, where source is either a file name of the form
@@ -10,35 +22,295 @@ import java.nio.file.Paths;
  * 2. Create an output file called Xxx.vm ;
  * 3. Use the CompilationEngine to compile the input JackTokenizer into the output
  * file.
+ * <p>
+ * usage: java JackCompiler source [-threads n] [-cache dir] [-cachesize bytes] [-xml] [-stringpool]
+ * the classes of a directory are compiled in parallel, by n threads, all the processors by default.
+ * each class is compiled on its own into its own file, so the outputs do not depend on the threads.
+ * with -cache, the VM code of every class is kept in the cache directory, and a class whose source and
+ * compiler did not change since it was compiled is copied from the cache instead of compiled again. the
+ * cache keeps at most -cachesize bytes, 64MB by default, and evicts the classes used least recently.
+ * with -xml, the parsed structure of every class is also written into a Xxx.xml file, from the same parse
+ * as its VM code, so the classes are not taken from the cache.
+ * with -stringpool, the string constants that a subroutine uses more than once, or inside a loop, are
+ * built once into static variables. all the statics of the program share RAM[16..255], so if the VM
+ * files of the directory need more statics than that, the classes are compiled again without their
+ * string pools, from the last one, until the statics fit.
  */
 public class JackCompiler {
 
+    /*********************** Constants **********************/
+    private static final String INPUT_FILE_SUFFIX = ".jack";
+    private static final String OUTPUT_FILE_SUFFIX = ".vm";
+    private static final String XML_FILE_SUFFIX = ".xml";
+    private static final long DEFAULT_CACHE_SIZE = 64L << 20;
+    private static final String STATIC_SEGMENT = "static";
+    private static final int MAX_STATICS = 240; // RAM[16..255], the stack starts at 256
+    private static final String MISSING_VALUE_MESSAGE = "missing value of option: ";
+
 
     public static void main(String[] args) throws IOException {
         File input = new File(Paths.get(args[0]).toAbsolutePath().toString());
+        int threads = Runtime.getRuntime().availableProcessors();
+        String cacheDirectory = null;
+        long cacheSize = DEFAULT_CACHE_SIZE;
+        boolean xml = false;
+        boolean stringPool = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads":
+                    threads = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                case "-cache":
+                    cacheDirectory = valueOf(args, ++i);
+                    break;
+                case "-cachesize":
+                    cacheSize = Long.parseLong(valueOf(args, ++i));
+                    break;
+                case "-xml":
+                    xml = true;
+                    break;
+                case "-stringpool":
+                    stringPool = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+        CompileCache cache = cacheDirectory == null ? null : new CompileCache(Paths.get(cacheDirectory), cacheSize);
         File file;
 
-        if (!input.isDirectory() && input.isFile() && input.getName().endsWith(".jack")) {
-            CompilationEngine engine = new CompilationEngine(input, input);
-            engine.compileClass();
-            engine.close();
+        if (!input.isDirectory() && input.isFile() && input.getName().endsWith(INPUT_FILE_SUFFIX)) {
+            compile(Collections.singletonList(input), 1, cache, xml, stringPool);
 
         } else if (input.isDirectory()) {
             String[] filesArray;
             filesArray = input.list();
-            CompilationEngine engine = null;
             assert filesArray != null;
+            Arrays.sort(filesArray);
+            List<File> jackFiles = new ArrayList<>();
             for (String fileName : filesArray) {
 
-                if (fileName.endsWith(".jack")) {
+                if (fileName.endsWith(INPUT_FILE_SUFFIX)) {
                     file = new File(input.toPath().toAbsolutePath().resolve(fileName).toString());
-                    engine = new CompilationEngine(file, file);
-                    engine.compileClass();
-                    engine.close();
+                    jackFiles.add(file);
+                }
+            }
+            compile(jackFiles, threads, cache, xml, stringPool);
+        }
+    }
+
+    /**
+     * @param args  - command line arguments
+     * @param index - index of the value of the option before it
+     * @return the value of the option
+     */
+    private static String valueOf(String[] args, int index) {
+        if (index == args.length) {
+            throw new IllegalArgumentException(MISSING_VALUE_MESSAGE + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * compiles Jack classes, each one into a Xxx.vm file next to it, on a work stealing pool. a class
+     * that fails does not stop the others: all the classes are compiled, and then the errors of all the
+     * classes that failed are thrown together, in the order of the files.
+     *
+     * @param jackFiles - the Jack classes to compile
+     * @param threads   - number of threads that compile the classes
+     * @throws IOException with the errors of all the classes that failed to compile
+     */
+    public static void compile(List<File> jackFiles, int threads) throws IOException {
+        compile(jackFiles, threads, null);
+    }
+
+    /**
+     * compiles Jack classes like compile(jackFiles, threads), and copies the classes that did not change
+     * from a cache instead of compiling them. the cache is trimmed to its size after all the classes.
+     *
+     * @param jackFiles - the Jack classes to compile
+     * @param threads   - number of threads that compile the classes
+     * @param cache     - cache of compiled classes, or null to compile all the classes
+     * @throws IOException with the errors of all the classes that failed to compile
+     */
+    public static void compile(List<File> jackFiles, int threads, CompileCache cache) throws IOException {
+        compile(jackFiles, threads, cache, false);
+    }
+
+    /**
+     * compiles Jack classes like compile(jackFiles, threads, cache), and may also write the parsed
+     * structure of each class into a Xxx.xml file next to it.
+     *
+     * @param jackFiles - the Jack classes to compile
+     * @param threads   - number of threads that compile the classes
+     * @param cache     - cache of compiled classes, or null to compile all the classes
+     * @param xml       - true to write the XML of the classes too
+     * @throws IOException with the errors of all the classes that failed to compile
+     */
+    public static void compile(List<File> jackFiles, int threads, CompileCache cache, boolean xml)
+            throws IOException {
+        compile(jackFiles, threads, cache, xml, false);
+    }
+
+    /**
+     * compiles Jack classes like compile(jackFiles, threads, cache, xml), and may also keep the string
+     * constants of the classes in string pools. the string pools are dropped from the classes, from the
+     * last one, while the VM files in the directories of the classes need more statics than RAM[16..255].
+     *
+     * @param jackFiles  - the Jack classes to compile
+     * @param threads    - number of threads that compile the classes
+     * @param cache      - cache of compiled classes, or null to compile all the classes
+     * @param xml        - true to write the XML of the classes too
+     * @param stringPool - true to compile the classes with their string pools
+     * @throws IOException with the errors of all the classes that failed to compile
+     */
+    public static void compile(List<File> jackFiles, int threads, CompileCache cache, boolean xml,
+                               boolean stringPool) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Future<Exception>> compilations = new ArrayList<>();
+        for (File jackFile : jackFiles) {
+            compilations.add(pool.submit(() -> {
+                try {
+                    compileClass(jackFile, cache, xml, stringPool);
+                    return null;
+                } catch (IOException | RuntimeException e) {
+                    return e; // the error of the class, as it was thrown
+                }
+            }));
+        }
+
+        List<Exception> errors = new ArrayList<>();
+        StringBuilder message = new StringBuilder();
+        try {
+            for (int i = 0; i < compilations.size(); i++) {
+                Exception error = compilations.get(i).get();
+                if (error != null) {
+                    errors.add(error);
+                    message.append(System.lineSeparator()).append(jackFiles.get(i).getName()).append(": ")
+                            .append(error);
                 }
             }
-            assert engine != null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!errors.isEmpty()) {
+            IOException failure = new IOException(errors.size() + " of " + jackFiles.size()
+                    + " classes failed to compile:" + message);
+            for (Exception error : errors) {
+                failure.addSuppressed(error);
+            }
+            throw failure;
+        }
+        if (stringPool) {
+            fitStatics(jackFiles, cache, xml);
+        }
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    /**
+     * compiles the classes again without their string pools, from the last one, until the statics of the
+     * VM files in their directories fit in RAM[16..255].
+     *
+     * @param jackFiles - the Jack classes, compiled with their string pools
+     * @param cache     - cache of compiled classes, or null
+     * @param xml       - true to write the XML of the classes too
+     * @throws IOException
+     */
+    private static void fitStatics(List<File> jackFiles, CompileCache cache, boolean xml) throws IOException {
+        Set<Path> directories = new HashSet<>();
+        for (File jackFile : jackFiles) {
+            directories.add(jackFile.toPath().toAbsolutePath().getParent());
+        }
+        int statics = 0;
+        for (Path directory : directories) {
+            try (DirectoryStream<Path> vmFiles = Files.newDirectoryStream(directory, "*" + OUTPUT_FILE_SUFFIX)) {
+                for (Path vmFile : vmFiles) {
+                    statics += staticCount(vmFile);
+                }
+            }
+        }
+        for (int i = jackFiles.size() - 1; i >= 0 && statics > MAX_STATICS; i--) {
+            Path vmFile = vmFileOf(jackFiles.get(i));
+            statics -= staticCount(vmFile);
+            compileClass(jackFiles.get(i), cache, xml, false);
+            statics += staticCount(vmFile);
+        }
+    }
+
+    /**
+     * @param vmFile - a VM file
+     * @return the number of distinct static variables that the VM file uses
+     * @throws IOException
+     */
+    private static int staticCount(Path vmFile) throws IOException {
+        Set<String> statics = new HashSet<>();
+        for (String line : Files.readAllLines(vmFile)) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length == 3 && words[1].equals(STATIC_SEGMENT)) {
+                statics.add(words[2]);
+            }
+        }
+        return statics.size();
+    }
+
+    /**
+     * @param jackFile - Xxx.jack file
+     * @return the Xxx.vm file next to it
+     */
+    private static Path vmFileOf(File jackFile) {
+        return Paths.get(jackFile.getPath().replace(INPUT_FILE_SUFFIX, OUTPUT_FILE_SUFFIX));
+    }
+
+    /**
+     * compiles a single Jack class into a Xxx.vm file next to it. if the class fails to compile, its
+     * partial output is deleted, so it is not taken for a compiled class. a class found in the cache is
+     * copied from it, unless its XML is written too, and a class compiled is kept in it.
+     *
+     * @param jackFile   - Xxx.jack file
+     * @param cache      - cache of compiled classes, or null
+     * @param xml        - true to write the XML of the class into a Xxx.xml file too
+     * @param stringPool - true to compile the class with its string pool
+     * @throws IOException
+     */
+    private static void compileClass(File jackFile, CompileCache cache, boolean xml, boolean stringPool)
+            throws IOException {
+        Path vmFile = vmFileOf(jackFile);
+        String key = null;
+        if (cache != null) {
+            key = cache.keyOf(Files.readAllBytes(jackFile.toPath()), stringPool);
+            if (!xml && cache.get(key, vmFile)) {
+                return;
+            }
+        }
+        CompilationEngine engine = new CompilationEngine(jackFile, jackFile);
+        engine.setStringPool(stringPool);
+        XmlWriter xmlWriter = xml ? new XmlWriter(jackFile) : null;
+        try {
+            if (xmlWriter != null) {
+                engine.compileClass(xmlWriter);
+                xmlWriter.close();
+            } else {
+                engine.compileClass();
+            }
+            engine.close();
+        } catch (IOException | RuntimeException e) {
             engine.close();
+            Files.deleteIfExists(vmFile);
+            if (xmlWriter != null) {
+                xmlWriter.close();
+                Files.deleteIfExists(Paths.get(jackFile.getPath().replace(INPUT_FILE_SUFFIX, XML_FILE_SUFFIX)));
+            }
+            throw e;
+        }
+        if (cache != null) {
+            cache.put(key, vmFile);
         }
     }
 
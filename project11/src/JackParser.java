@@ -0,0 +1,437 @@
+import java.io.IOException;
+
+/**
+ * This class parses a Jack class from a JackTokenizer into a SyntaxTree, by recursive descent, with
+ * a parseXxx routine for every syntactic element xxx of the Jack grammar. every routine starts at the
+ * first token of xxx, adds the nodes of xxx to the tree, and advances the tokenizer exactly beyond xxx.
+ * every declaration of the class is passed to the visitors as soon as it is parsed, and its nodes are
+ * then reused for the next declaration.
+ */
+public class JackParser {
+
+    /************************ Constants *****************************/
+    private static final String STATIC_STR = "static";
+    private static final String FIELD_STR = "field";
+    private static final String CONTRC_STR = "constructor";
+    private static final String FUNC_STR = "function";
+    private static final String METHOD_SRT = "method";
+    private static final String VAR_STR = "var";
+    private static final String LET_STR = "let";
+    private static final String IF_STR = "if";
+    private static final String ELSE_STR = "else";
+    private static final String WHILE_STR = "while";
+    private static final String DO_STR = "do";
+    private static final String RETURN_STR = "return";
+    private static final String OP_SYMBOLS = "+-*/&|<>=";
+
+    /************************ Data Member *************************/
+    private final JackTokenizer jackTokenizer;
+    private final SyntaxTree tree = new SyntaxTree();
+    private String currTokenType;
+    private String currentToken;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param jackTokenizer - the tokens of a Jack class
+     */
+    public JackParser(JackTokenizer jackTokenizer) {
+        this.jackTokenizer = jackTokenizer;
+    }
+
+    /**
+     * parses a complete class, and passes it to the visitors.
+     *
+     * @param visitors - the backends that visit the class
+     * @throws IOException
+     */
+    void parseClass(SyntaxTree.Visitor... visitors) throws IOException {
+        getNextToken(); // class
+        getNextToken();
+        int classNode = tree.open(SyntaxTree.CLASS, tree.addString(currentToken));
+        for (SyntaxTree.Visitor visitor : visitors) {
+            visitor.visitClass(tree, classNode);
+        }
+        getNextToken(); // {
+        getNextToken();
+        long mark = tree.mark();
+        while (isKeyword(STATIC_STR) || isKeyword(FIELD_STR) || isKeyword(CONTRC_STR) || isKeyword(FUNC_STR)
+                || isKeyword(METHOD_SRT)) {
+            int declaration;
+            if (isKeyword(STATIC_STR) || isKeyword(FIELD_STR)) {
+                declaration = parseClassVarDec();
+            } else {
+                declaration = parseSubroutineDec();
+            }
+            for (SyntaxTree.Visitor visitor : visitors) {
+                visitor.visitDeclaration(tree, declaration);
+            }
+            tree.reset(mark);
+        }
+        tree.close(classNode); // }
+        for (SyntaxTree.Visitor visitor : visitors) {
+            visitor.endClass(tree, classNode);
+        }
+    }
+
+    /**
+     * parses a static declaration or a field declaration.
+     *
+     * @return the declaration node
+     * @throws IOException
+     */
+    private int parseClassVarDec() throws IOException {
+        int node = tree.open(SyntaxTree.CLASS_VAR_DEC, tree.addString(currentToken));
+        getNextToken();
+        parseTypeAndNames();
+        tree.close(node);
+        return node;
+    }
+
+    /**
+     * parses a complete method, function, or constructor.
+     *
+     * @return the declaration node
+     * @throws IOException
+     */
+    private int parseSubroutineDec() throws IOException {
+        int node = tree.open(SyntaxTree.SUBROUTINE_DEC, tree.addString(currentToken));
+        getNextToken();
+        tree.leaf(SyntaxTree.TYPE, tree.addString(currentToken));
+        getNextToken();
+        tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+        getNextToken(); // (
+        getNextToken();
+        parseParameterList();
+        getNextToken(); // {
+        int body = tree.open(SyntaxTree.SUBROUTINE_BODY, SyntaxTree.NONE);
+        getNextToken();
+        while (isKeyword(VAR_STR)) {
+            int varDec = tree.open(SyntaxTree.VAR_DEC, SyntaxTree.NONE);
+            getNextToken();
+            parseTypeAndNames();
+            tree.close(varDec);
+        }
+        parseStatements();
+        tree.close(body);
+        getNextToken(); // }
+        tree.close(node);
+        return node;
+    }
+
+    /**
+     * parses a type and a comma separated list of names, up to the semicolon after them.
+     *
+     * @throws IOException
+     */
+    private void parseTypeAndNames() throws IOException {
+        tree.leaf(SyntaxTree.TYPE, tree.addString(currentToken));
+        getNextToken();
+        tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+        getNextToken();
+        while (isSymbol(',')) {
+            getNextToken();
+            tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+            getNextToken();
+        }
+        getNextToken(); // ;
+    }
+
+    /**
+     * parses a possibly empty parameter list, up to the closing circular bracket.
+     *
+     * @throws IOException
+     */
+    private void parseParameterList() throws IOException {
+        int node = tree.open(SyntaxTree.PARAMETER_LIST, SyntaxTree.NONE);
+        if (!isSymbol(')')) {
+            tree.leaf(SyntaxTree.TYPE, tree.addString(currentToken));
+            getNextToken();
+            tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+            getNextToken();
+            while (isSymbol(',')) {
+                getNextToken();
+                tree.leaf(SyntaxTree.TYPE, tree.addString(currentToken));
+                getNextToken();
+                tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+                getNextToken();
+            }
+        }
+        tree.close(node);
+    }
+
+    /**
+     * parses a sequence of statements, up to the closing curly bracket.
+     *
+     * @throws IOException
+     */
+    private void parseStatements() throws IOException {
+        int node = tree.open(SyntaxTree.STATEMENTS, SyntaxTree.NONE);
+        boolean isStatement = true;
+        while (isStatement) {
+            if (isKeyword(LET_STR)) {
+                parseLet();
+            } else if (isKeyword(IF_STR)) {
+                parseIf();
+            } else if (isKeyword(WHILE_STR)) {
+                parseWhile();
+            } else if (isKeyword(DO_STR)) {
+                parseDo();
+            } else if (isKeyword(RETURN_STR)) {
+                parseReturn();
+            } else {
+                isStatement = false;
+            }
+        }
+        tree.close(node);
+    }
+
+    /**
+     * parses a let statement.
+     *
+     * @throws IOException
+     */
+    private void parseLet() throws IOException {
+        int node = tree.open(SyntaxTree.LET, SyntaxTree.NONE);
+        getNextToken();
+        tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+        getNextToken();
+        if (isSymbol('[')) {
+            getNextToken();
+            parseExpression();
+            getNextToken(); // ]
+        }
+        getNextToken(); // =
+        parseExpression();
+        getNextToken(); // ;
+        tree.close(node);
+    }
+
+    /**
+     * parses an if statement, possibly with a trailing else clause.
+     *
+     * @throws IOException
+     */
+    private void parseIf() throws IOException {
+        int node = tree.open(SyntaxTree.IF, SyntaxTree.NONE);
+        getNextToken(); // (
+        getNextToken();
+        parseExpression();
+        getNextToken(); // )
+        getNextToken(); // {
+        parseStatements();
+        getNextToken(); // }
+        if (isKeyword(ELSE_STR)) {
+            getNextToken(); // {
+            getNextToken();
+            parseStatements();
+            getNextToken(); // }
+        }
+        tree.close(node);
+    }
+
+    /**
+     * parses a while statement.
+     *
+     * @throws IOException
+     */
+    private void parseWhile() throws IOException {
+        int node = tree.open(SyntaxTree.WHILE, SyntaxTree.NONE);
+        getNextToken(); // (
+        getNextToken();
+        parseExpression();
+        getNextToken(); // )
+        getNextToken(); // {
+        parseStatements();
+        getNextToken(); // }
+        tree.close(node);
+    }
+
+    /**
+     * parses a do statement.
+     *
+     * @throws IOException
+     */
+    private void parseDo() throws IOException {
+        int node = tree.open(SyntaxTree.DO, SyntaxTree.NONE);
+        getNextToken();
+        String name = currentToken;
+        getNextToken();
+        parseCall(name);
+        getNextToken(); // ;
+        tree.close(node);
+    }
+
+    /**
+     * parses a return statement.
+     *
+     * @throws IOException
+     */
+    private void parseReturn() throws IOException {
+        int node = tree.open(SyntaxTree.RETURN, SyntaxTree.NONE);
+        getNextToken();
+        if (!isSymbol(';')) {
+            parseExpression();
+        }
+        getNextToken(); // ;
+        tree.close(node);
+    }
+
+    /**
+     * parses an expression. the operators of Jack have no precedence, so the terms and the operators
+     * are the children of the expression, in the order of the source.
+     *
+     * @throws IOException
+     */
+    private void parseExpression() throws IOException {
+        int node = tree.open(SyntaxTree.EXPRESSION, SyntaxTree.NONE);
+        parseTerm();
+        while (currTokenType.equals(JackTokenizer.SYMBOL_TOKEN_TYPE) && OP_SYMBOLS.contains(currentToken)) {
+            tree.leaf(SyntaxTree.OP, currentToken.charAt(0));
+            getNextToken();
+            parseTerm();
+        }
+        tree.close(node);
+    }
+
+    /**
+     * parses a term. if the current token is an identifier, the token after it distinguishes between
+     * a variable, an array entry, and a subroutine call.
+     *
+     * @throws IOException
+     */
+    private void parseTerm() throws IOException {
+        switch (currTokenType) {
+            case JackTokenizer.INT_CONST_TOKEN_TYPE:
+                tree.leaf(SyntaxTree.INT_CONST, jackTokenizer.intVal());
+                getNextToken();
+                return;
+            case JackTokenizer.STRING_CONST_TOKEN_TYPE:
+                tree.leaf(SyntaxTree.STRING_CONST, tree.addString(currentToken));
+                getNextToken();
+                return;
+            case JackTokenizer.KEYWORD_TOKEN_TYPE:
+                tree.leaf(SyntaxTree.KEYWORD_CONST, tree.addString(currentToken));
+                getNextToken();
+                return;
+        }
+        int node;
+        if (isSymbol('(')) {
+            node = tree.open(SyntaxTree.PAREN, SyntaxTree.NONE);
+            getNextToken();
+            parseExpression();
+            getNextToken(); // )
+            tree.close(node);
+        } else if (isSymbol('-') || isSymbol('~')) {
+            node = tree.open(SyntaxTree.UNARY, currentToken.charAt(0));
+            getNextToken();
+            parseTerm();
+            tree.close(node);
+        } else {
+            String name = currentToken;
+            getNextToken();
+            if (isSymbol('[')) {
+                node = tree.open(SyntaxTree.ARRAY_ENTRY, tree.addString(name));
+                getNextToken();
+                parseExpression();
+                getNextToken(); // ]
+                tree.close(node);
+            } else if (isSymbol('(') || isSymbol('.')) {
+                parseCall(name);
+            } else {
+                tree.leaf(SyntaxTree.VARIABLE, tree.addString(name));
+            }
+        }
+    }
+
+    /**
+     * parses a subroutine call, from the token after its first name.
+     *
+     * @param name - the first name of the call, a subroutine, a class or a variable
+     * @throws IOException
+     */
+    private void parseCall(String name) throws IOException {
+        int node;
+        if (isSymbol('.')) {
+            node = tree.open(SyntaxTree.CALL, tree.addString(name));
+            getNextToken();
+            tree.leaf(SyntaxTree.NAME, tree.addString(currentToken));
+            getNextToken(); // (
+        } else {
+            node = tree.open(SyntaxTree.CALL, SyntaxTree.NONE);
+            tree.leaf(SyntaxTree.NAME, tree.addString(name));
+        }
+        parseExpressionList();
+        getNextToken(); // )
+        tree.close(node);
+    }
+
+    /**
+     * parses a possibly empty comma separated list of expressions, from its opening circular
+     * bracket up to its closing one.
+     *
+     * @throws IOException
+     */
+    private void parseExpressionList() throws IOException {
+        int node = tree.open(SyntaxTree.EXPRESSION_LIST, SyntaxTree.NONE);
+        getNextToken();
+        if (!isSymbol(')')) {
+            parseExpression();
+            while (isSymbol(',')) {
+                getNextToken();
+                parseExpression();
+            }
+        }
+        tree.close(node);
+    }
+
+    /**
+     * @param symbol - a symbol
+     * @return true if the current token is that symbol
+     */
+    private boolean isSymbol(char symbol) {
+        return currTokenType.equals(JackTokenizer.SYMBOL_TOKEN_TYPE) && currentToken.charAt(0) == symbol;
+    }
+
+    /**
+     * @param keyword - a keyword
+     * @return true if the current token is that keyword
+     */
+    private boolean isKeyword(String keyword) {
+        return currTokenType.equals(JackTokenizer.KEYWORD_TOKEN_TYPE) && currentToken.equals(keyword);
+    }
+
+    /**
+     * get the next token and its type and updates fields:
+     * currTokenType, currentToken. at the end of the input the type is empty.
+     *
+     * @throws IOException
+     */
+    private void getNextToken() throws IOException {
+        if (jackTokenizer.hasMoreTokens()) {
+            jackTokenizer.advance();
+            currTokenType = jackTokenizer.tokenType();
+            if (currTokenType.equals(JackTokenizer.IDENTIFIER_TOKEN_TYPE)) {
+                currentToken = jackTokenizer.identifier();
+
+            } else if (currTokenType.equals(JackTokenizer.INT_CONST_TOKEN_TYPE)) {
+                currentToken = String.valueOf(jackTokenizer.intVal());
+
+            } else if (currTokenType.equals(JackTokenizer.KEYWORD_TOKEN_TYPE)) {
+                currentToken = jackTokenizer.keyWord();
+
+            } else if (currTokenType.equals(JackTokenizer.STRING_CONST_TOKEN_TYPE)) {
+                currentToken = jackTokenizer.stringVal();
+
+            } else if (currTokenType.equals(JackTokenizer.SYMBOL_TOKEN_TYPE)) {
+                currentToken = String.valueOf(jackTokenizer.currentSymbol());
+            }
+        } else {
+            currTokenType = "";
+            currentToken = "";
+        }
+    }
+
+
+}
@@ -1,14 +1,19 @@
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Hashtable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Removes all comments and white space from the input stream and breaks it
- * into Jacklanguage tokens, as specified by the Jack grammar.
+ * into Jacklanguage tokens, as specified by the Jack grammar. the input is
+ * tokenized on demand: hasMoreTokens scans only until the next token, so the
+ * memory does not grow with the size of the input.
  */
 public class JackTokenizer {
 
@@ -19,65 +24,366 @@ public class JackTokenizer {
     static final String INT_CONST_TOKEN_TYPE = "integerConstant";
     static final String STRING_CONST_TOKEN_TYPE = "stringConstant";
 
-    private static final String KEYWORD = "static|void|method|var|constructor|false|this|do|while|int|boolean|field|null|else|function|char|true|let|class|if|return|";
-    private static final String SYMBOL = "[\\&\\*\\+\\(\\)\\.\\/\\,\\-\\]\\;\\~\\}\\|\\{\\>\\=\\[\\<]";
-    private static final String INT_CONST = "\\d+";
-    private static final String STRING_CONST = "\"[^\"\n]*\"";
-    private static final String IDENTIFIER = "[\\w_]++";
-    private static final String TOTAL = IDENTIFIER + "|" + KEYWORD + SYMBOL + "|" + INT_CONST + "|" + STRING_CONST;
-
-    private static final Pattern TOKENS_PATTERN = Pattern.compile(TOTAL);
-    private static final Pattern KEYWORD_PATTERN = Pattern.compile(KEYWORD);
-    private static final Pattern SYMBOL_PATTERN = Pattern.compile(SYMBOL);
-    private static final Pattern STRING_CONST_PATTERN = Pattern.compile(STRING_CONST);
-    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile(IDENTIFIER);
-    private static final Pattern INT_CONST_PATTERN = Pattern.compile(INT_CONST);
+    // the types as they are kept in the token buffer, each one is an index of TOKEN_TYPE_NAMES
+    private static final int KEYWORD_TYPE = 0;
+    private static final int SYMBOL_TYPE = 1;
+    private static final int IDENTIFIER_TYPE = 2;
+    private static final int INT_CONST_TYPE = 3;
+    private static final int STRING_CONST_TYPE = 4;
+    private static final String[] TOKEN_TYPE_NAMES = {KEYWORD_TOKEN_TYPE, SYMBOL_TOKEN_TYPE,
+            IDENTIFIER_TOKEN_TYPE, INT_CONST_TOKEN_TYPE, STRING_CONST_TOKEN_TYPE};
+
+    private static final String[] KEYWORDS = {"static", "void", "method", "var", "constructor", "false", "this",
+            "do", "while", "int", "boolean", "field", "null", "else", "function", "char", "true", "let", "class",
+            "if", "return"};
+    private static final String SYMBOLS = "{}()[].,;+-*/&|<>=~";
+    private static final String[] SYMBOL_TOKENS = new String[128]; // the token of each symbol char
+
+    // the classes of the chars the scanner reads, by ascii code. all other chars are skipped.
+    private static final byte OTHER_CHAR = 0;
+    private static final byte LETTER_CHAR = 1; // a letter or '_', that starts or continues a word
+    private static final byte DIGIT_CHAR = 2; // continues a word, a word of digits only is a number
+    private static final byte SYMBOL_CHAR = 3;
+    private static final byte QUOTE_CHAR = 4;
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    static {
+        for (char symbol : SYMBOLS.toCharArray()) {
+            SYMBOL_TOKENS[symbol] = String.valueOf(symbol);
+            CHAR_CLASSES[symbol] = SYMBOL_CHAR;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASSES[c] = LETTER_CHAR;
+            CHAR_CLASSES[Character.toUpperCase(c)] = LETTER_CHAR;
+        }
+        CHAR_CLASSES['_'] = LETTER_CHAR;
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] = DIGIT_CHAR;
+        }
+        CHAR_CLASSES['"'] = QUOTE_CHAR;
+    }
+
+    // the states of the scanner between two chars
+    private static final int CODE_STATE = 0;
+    private static final int WORD_STATE = 1;
+    private static final int STRING_STATE = 2;
+    private static final int SLASH_STATE = 3; // after a '/' in code, that may start a comment
+    private static final int LINE_COMMENT_STATE = 4;
+    private static final int BLOCK_COMMENT_STATE = 5;
+    private static final int BLOCK_COMMENT_STAR_STATE = 6; // after a '*' in a block comment, that may end it
+
     private static final String ERROR_MESSAGE = "Function called for the wrong type! expected: ";
     private static final String ERROR_MESSAGE_GOT = "got: ";
-
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MAP_WINDOW_SIZE = 1 << 24;
+    private static final int INITIAL_TEXT_SIZE = 1 << 8;
+    private static final int RING_SIZE = 4; // a power of 2, a single char may end two tokens
 
     /********************** Data Members **************************/
-    private final BufferedReader reader;
+    private final Reader reader; // the input, or null for a mapped file
+    private final FileChannel channel; // the mapped file, or null for a reader
+    private MappedByteBuffer window; // the mapped part of the file
+    private long windowStart = 0;
+    private CharsetDecoder decoder;
+    private boolean isDecoded = false; // true after the last window of the file was decoded
+    private final char[] chars = new char[READ_BUFFER_SIZE]; // the chars read last
+    private int charsCount = 0;
+    private int charsPosition = 0; // the next char to scan
+    private boolean isEndOfInput = false;
     public String currType;
     public String currentToken;
-    private String currentLine;
-    private int currentTokenNumber = 0;
-    private Hashtable<Integer, String> tokensHashTable;
+
+    // the tokens that were scanned and not read yet, as a ring of parallel arrays. identifiers, constants
+    // and strings are kept as the offset and the length of their chars in text. keywords and symbols are
+    // kept by their id instead of an offset: the index of the keyword in KEYWORDS, or the char of the symbol.
+    private char[] text = new char[INITIAL_TEXT_SIZE]; // the chars of the tokens
+    private int textLength = 0;
+    private int[] tokenTypes = new int[RING_SIZE];
+    private int[] tokenOffsets = new int[RING_SIZE];
+    private int[] tokenLengths = new int[RING_SIZE];
+    private int ringStart = 0; // the next token to read
+    private int ringCount = 0;
+
+    // the scanner, between two tokens
+    private int state = CODE_STATE;
+    private int tokenStart; // offset in text of the word or the string that is scanned
+    private boolean isNumber; // true while the scanned word has digits only
 
 
     /**
-     * Opens the input file/stream and gets ready to tokenize it.
+     * Opens the input file/stream and gets ready to tokenize it. the file is mapped to memory and
+     * decoded as UTF-8, in windows of a fixed size.
      *
      * @param inputFile - input file
      * @throws IOException
      */
     public JackTokenizer(File inputFile) throws IOException {
-        reader = Files.newBufferedReader(inputFile.toPath());
-        tokensHashTable = new Hashtable<>();
-        fillHashTable();
+        reader = null;
+        channel = FileChannel.open(inputFile.toPath());
+        window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAP_WINDOW_SIZE));
+        decoder = StandardCharsets.UTF_8.newDecoder();
+    }
+
+    /**
+     * Opens any input stream, for example a pipe, and gets ready to tokenize it.
+     *
+     * @param input - input stream
+     * @throws IOException
+     */
+    public JackTokenizer(Reader input) throws IOException {
+        reader = input;
+        channel = null;
     }
 
 
     /**
-     * fills the token hashTable with tokens from the file.
-     * each key is the number of token in the file,
-     * the function also updates the total number of tokens in the file
+     * scans the input until a token is added to the ring, or to the end of the input.
      *
      * @throws IOException - by reader
      */
-    private void fillHashTable() throws IOException {
-        Integer currTokenNumber = 0;
-        while (hasMoreLines()) { // parse over file
-            currentLine = trimCommentsAndSpaces(reader.readLine());
-            Matcher tokenMatcher = TOKENS_PATTERN.matcher(currentLine);
+    private void scanNextToken() throws IOException {
+        while (ringCount == 0 && !isEndOfInput) {
+            if (charsPosition == charsCount) {
+                int count = readChars();
+                if (count == -1) {
+                    endScan();
+                    isEndOfInput = true;
+                    return;
+                }
+                charsCount = count;
+                charsPosition = 0;
+            }
+            scan();
+        }
+    }
+
+    /**
+     * reads the next chars of the input into chars.
+     *
+     * @return the number of chars read, or -1 at the end of the input
+     * @throws IOException - by reader, or for input that is not UTF-8
+     */
+    private int readChars() throws IOException {
+        if (reader != null) {
+            return reader.read(chars, 0, chars.length);
+        }
+        if (isDecoded) {
+            return -1;
+        }
+        CharBuffer buffer = CharBuffer.wrap(chars);
+        while (buffer.position() == 0) {
+            boolean isLastWindow = windowStart + window.limit() == channel.size();
+            CoderResult result = decoder.decode(window, buffer, isLastWindow);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                break; // chars is full
+            }
+            if (isLastWindow) {
+                decoder.flush(buffer);
+                isDecoded = true;
+                return buffer.position() == 0 ? -1 : buffer.position();
+            }
+            // a char that is cut by the end of the window is decoded from the start of the next one
+            windowStart += window.position();
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(channel.size() - windowStart, MAP_WINDOW_SIZE));
+        }
+        return buffer.position();
+    }
+
+    /**
+     * breaks the chars that were read into tokens, with a state machine over the whole input, so
+     * comments, words and strings may continue from the previous chars. in code, the class of each char
+     * decides the next state: a letter or a digit starts a word that continues to the last letter or
+     * digit, a symbol is a token on its own, a quote starts a string that ends in the next quote, and a
+     * '/' may start a comment. a comment ends at the end of its line or at the next "*&#47;", and a
+     * string at the next quote or at the end of its line. each token is classified once, when it ends.
+     * the scan stops after the char that ends a token.
+     */
+    private void scan() {
+        while (ringCount == 0 && charsPosition < charsCount) {
+            char c = chars[charsPosition++];
+            if (state == WORD_STATE) {
+                byte charClass = charClass(c);
+                if (charClass == LETTER_CHAR || charClass == DIGIT_CHAR) {
+                    isNumber &= charClass == DIGIT_CHAR;
+                    appendText(c);
+                    continue;
+                }
+                endWord();
+            } else if (state == SLASH_STATE) {
+                if (c == '/') {
+                    state = LINE_COMMENT_STATE;
+                    continue;
+                } else if (c == '*') {
+                    state = BLOCK_COMMENT_STATE;
+                    continue;
+                }
+                addToken(SYMBOL_TYPE, '/', 1);
+                state = CODE_STATE;
+            }
 
-            // parse a line and adds token to hashTable
-            while (tokenMatcher.find()) if (!tokenMatcher.group().equals("")) {
-                tokensHashTable.put(currTokenNumber, tokenMatcher.group());
-                currTokenNumber++;
+            switch (state) {
+                case CODE_STATE:
+                    scanCode(c);
+                    break;
+                case STRING_STATE:
+                    if (c == '"' || c == '\n') {
+                        addToken(STRING_CONST_TYPE, tokenStart, textLength - tokenStart); // without the quotes
+                        state = CODE_STATE;
+                    } else {
+                        appendText(c);
+                    }
+                    break;
+                case LINE_COMMENT_STATE:
+                    if (c == '\n') {
+                        state = CODE_STATE;
+                    }
+                    break;
+                case BLOCK_COMMENT_STATE:
+                    if (c == '*') {
+                        state = BLOCK_COMMENT_STAR_STATE;
+                    }
+                    break;
+                case BLOCK_COMMENT_STAR_STATE:
+                    if (c == '/') {
+                        state = CODE_STATE;
+                    } else if (c != '*') {
+                        state = BLOCK_COMMENT_STATE;
+                    }
+                    break;
+            }
+        }
+    }
 
+    /**
+     * scans a char of code, that is not in a comment, a word or a string.
+     *
+     * @param c - the char
+     */
+    private void scanCode(char c) {
+        byte charClass = charClass(c);
+        if (charClass == LETTER_CHAR || charClass == DIGIT_CHAR) {
+            state = WORD_STATE;
+            tokenStart = textLength;
+            isNumber = charClass == DIGIT_CHAR;
+            appendText(c);
+
+        } else if (charClass == SYMBOL_CHAR) {
+            if (c == '/') {
+                state = SLASH_STATE;
+            } else {
+                addToken(SYMBOL_TYPE, c, 1);
             }
+
+        } else if (charClass == QUOTE_CHAR) {
+            state = STRING_STATE;
+            tokenStart = textLength;
+        }
+    }
+
+    /**
+     * ends the scanned word, as a keyword, an integer constant or an identifier. keywords are kept by
+     * their id only, so their chars are removed from text.
+     */
+    private void endWord() {
+        int length = textLength - tokenStart;
+        int keywordId = isNumber ? -1 : keywordId(tokenStart, length);
+        if (keywordId != -1) {
+            addToken(KEYWORD_TYPE, keywordId, length);
+            textLength = tokenStart;
+        } else {
+            addToken(isNumber ? INT_CONST_TYPE : IDENTIFIER_TYPE, tokenStart, length);
         }
+        state = CODE_STATE;
+    }
+
+    /**
+     * ends the scan at the end of the input. a word, a '/' or a string that is not closed at the end of
+     * the input ends with it.
+     */
+    private void endScan() {
+        if (state == WORD_STATE) {
+            endWord();
+        } else if (state == SLASH_STATE) {
+            addToken(SYMBOL_TYPE, '/', 1);
+        } else if (state == STRING_STATE) {
+            addToken(STRING_CONST_TYPE, tokenStart, textLength - tokenStart);
+        }
+        state = CODE_STATE;
+    }
+
+    /**
+     * @param c - a char of the source
+     * @return the class of the char in the scanner
+     */
+    private static byte charClass(char c) {
+        return c < CHAR_CLASSES.length ? CHAR_CLASSES[c] : OTHER_CHAR;
+    }
+
+    /**
+     * @param offset - offset of a word in text
+     * @param length - length of the word
+     * @return the index of the word in KEYWORDS, or -1 if it is not a keyword
+     */
+    private int keywordId(int offset, int length) {
+        for (int id = 0; id < KEYWORDS.length; id++) {
+            String keyword = KEYWORDS[id];
+            if (keyword.length() != length || keyword.charAt(0) != text[offset]) {
+                continue;
+            }
+            int i = 1;
+            while (i < length && keyword.charAt(i) == text[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * adds a token to the end of the ring.
+     *
+     * @param type   - type of the token
+     * @param offset - offset of the token in text, or the id of a keyword or a symbol
+     * @param length - length of the token in text
+     */
+    private void addToken(int type, int offset, int length) {
+        int slot = (ringStart + ringCount) & (RING_SIZE - 1);
+        tokenTypes[slot] = type;
+        tokenOffsets[slot] = offset;
+        tokenLengths[slot] = length;
+        ringCount++;
+    }
+
+    /**
+     * removes the chars of the tokens that were read from text, when the ring is empty. only the chars of
+     * a word or a string that is still scanned are kept, so text is as long as the longest token.
+     */
+    private void compactText() {
+        if (state == WORD_STATE || state == STRING_STATE) {
+            System.arraycopy(text, tokenStart, text, 0, textLength - tokenStart);
+            textLength -= tokenStart;
+            tokenStart = 0;
+        } else {
+            textLength = 0;
+        }
+    }
+
+    /**
+     * appends a char of a token to text.
+     *
+     * @param c - the char
+     */
+    private void appendText(char c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        text[textLength++] = c;
     }
 
 
@@ -87,7 +393,11 @@ public class JackTokenizer {
      * @throws IOException
      */
     void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        } else {
+            channel.close();
+        }
     }
 
 
@@ -98,9 +408,8 @@ public class JackTokenizer {
      * @throws IOException
      */
     boolean hasMoreTokens() throws IOException {
-        if (currentTokenNumber < tokensHashTable.size()) {
-            return true;
-        } else return false;
+        scanNextToken();
+        return ringCount > 0;
     }
 
     /**
@@ -111,80 +420,24 @@ public class JackTokenizer {
     void advance() throws IOException {
         if (hasMoreTokens()) {
 
-            String tempToken = tokensHashTable.get(currentTokenNumber);
-            Matcher keywordMatcher = KEYWORD_PATTERN.matcher(tempToken);
-            Matcher symbolMatcher = SYMBOL_PATTERN.matcher(tempToken);
-            Matcher stringConstMatcher = STRING_CONST_PATTERN.matcher(tempToken);
-            Matcher identifierMatcher = IDENTIFIER_PATTERN.matcher(tempToken);
-            Matcher intCostMatcher = INT_CONST_PATTERN.matcher(tempToken);
-
-            if (keywordMatcher.matches()) {
-
-                currType = KEYWORD_TOKEN_TYPE;
-                currentToken = tempToken;
-            } else if (stringConstMatcher.matches()) {
-                currType = STRING_CONST_TOKEN_TYPE;
-                int start = tempToken.indexOf("\"");
-                int end = tempToken.lastIndexOf("\"");
-                if (start == 0 && end == (tempToken.length() - 1)) {
-                    tempToken = tempToken.substring(1, tempToken.length() - 1);
-                }
-                currentToken = tempToken;
-            } else if (intCostMatcher.matches()) {
-                currType = INT_CONST_TOKEN_TYPE;
-                currentToken = tempToken;
-            } else if (identifierMatcher.matches()) {
-                currType = IDENTIFIER_TOKEN_TYPE;
-                currentToken = tempToken;
-            } else if (symbolMatcher.matches()) {
-                currType = SYMBOL_TOKEN_TYPE;
-                currentToken = tempToken;
-            }
-
-            currentTokenNumber++; // advance token cursor
-
-
-        }
-    }
-
-    /**
-     * delete comments and leading and trailing white spaces from a given line,
-     * and updates the inCommentScope accordingly.
-     *
-     * @param line - string of the line currently read
-     * @return line without comments and leading and trailing white spaces
-     */
-    private String trimCommentsAndSpaces(String line) {
-        line = line.trim(); // trim the outlines spaces
-        int start = line.indexOf("\"");
-        int end = line.lastIndexOf("\"");
-        int lineCommentIndex = line.indexOf("//");
-
-
-        if (lineCommentIndex != -1 && lineCommentIndex < start || lineCommentIndex > end) {
-            line = line.substring(0, lineCommentIndex); // delete line comment
-        } else {
-            int lineBlockIndex = line.indexOf("/*");
-            if (lineBlockIndex != -1 && lineBlockIndex < start || lineBlockIndex > end) {
-                line = line.substring(0, lineBlockIndex); // delete method/func comment
+            int type = tokenTypes[ringStart];
+            int offset = tokenOffsets[ringStart];
+            currType = TOKEN_TYPE_NAMES[type];
+            if (type == KEYWORD_TYPE) {
+                currentToken = KEYWORDS[offset];
+            } else if (type == SYMBOL_TYPE) {
+                currentToken = SYMBOL_TOKENS[offset];
             } else {
-                int endLineBlockIndex = line.indexOf("*/");
-                if (endLineBlockIndex != -1 && endLineBlockIndex < start || endLineBlockIndex > end) {
-                    line = "";
-                } else {
-                    int middleBlockIndex = line.indexOf("*");
-                    if (middleBlockIndex == 0) {
-                        line = "";
-                    }
-                }
-
+                currentToken = new String(text, offset, tokenLengths[ringStart]);
             }
 
+            ringStart = (ringStart + 1) & (RING_SIZE - 1); // advance token cursor
+            ringCount--;
+            if (ringCount == 0) {
+                compactText();
+            }
 
         }
-
-        return line;
-
     }
 
     /**
@@ -261,20 +514,6 @@ public class JackTokenizer {
             throw new IllegalArgumentException(ERROR_MESSAGE + STRING_CONST_TOKEN_TYPE + ERROR_MESSAGE_GOT + currType);
     }
 
-    /**
-     * checks if there is more lines to read in the input file
-     *
-     * @return result - boolean if there is more lines commends, etc. to read.
-     */
-    private boolean hasMoreLines() {
-        boolean result = false;
-        try {
-            result = reader.ready();
-        } catch (IOException e) {
-            System.err.println(e);
-        }
-        return result;
-    }
 
 
 }
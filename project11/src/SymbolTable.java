@@ -6,6 +6,28 @@ import java.util.Hashtable;
  * (class or subroutine).
  */
 public class SymbolTable {
+
+    /**
+     * the kinds of variables, each one with the VM segment that holds its variables.
+     */
+    enum Kind {
+        STATIC(VMWriter.Segment.STATIC), FIELD(VMWriter.Segment.THIS), ARG(VMWriter.Segment.ARGUMENT),
+        VAR(VMWriter.Segment.LOCAL);
+
+        private final VMWriter.Segment segment;
+
+        Kind(VMWriter.Segment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * @return the VM segment of the variables of this kind
+         */
+        VMWriter.Segment getSegment() {
+            return segment;
+        }
+    }
+
     /******************** Data Members ************************/
     Variable variable;
     private int indexOfstatic, indexOffield, indexOflocal, indexofargument;
@@ -44,30 +66,28 @@ public class SymbolTable {
      * @param type -> var
      * @param kind -> var
      */
-    void define(String name, String type, String kind) {
-        if (kind.equals("static")) {
-            variable = new Variable(name, type, kind, indexOfstatic);
-            classScope.put(name, variable);
-            indexOfstatic++;
-
-        } else if (kind.equals("field")) {
-            variable = new Variable(name, type, kind, indexOffield);
-            classScope.put(name, variable);
-            indexOffield++;
-
-        } else if (kind.equals("var")) {
-            variable = new Variable(name, type, kind, indexOflocal);
-            subroutineScope.put(name, variable);
-            indexOflocal++;
-
-
-        } else if (kind.equals("argument")) {
-            variable = new Variable(name, type, kind, indexofargument);
-            subroutineScope.put(name, variable);
-            indexofargument++;
-
-        } else {
-            System.out.println("invalid kind string");
+    void define(String name, String type, Kind kind) {
+        switch (kind) {
+            case STATIC:
+                variable = new Variable(name, type, kind, indexOfstatic);
+                classScope.put(name, variable);
+                indexOfstatic++;
+                break;
+            case FIELD:
+                variable = new Variable(name, type, kind, indexOffield);
+                classScope.put(name, variable);
+                indexOffield++;
+                break;
+            case VAR:
+                variable = new Variable(name, type, kind, indexOflocal);
+                subroutineScope.put(name, variable);
+                indexOflocal++;
+                break;
+            default:
+                variable = new Variable(name, type, kind, indexofargument);
+                subroutineScope.put(name, variable);
+                indexofargument++;
+                break;
         }
     }
 
@@ -78,18 +98,16 @@ public class SymbolTable {
      * @param kind -> var
      * @return int
      */
-    int varCount(String kind) {
-        if (kind.equals("static")) {
-            return indexOfstatic;
-        } else if (kind.equals("field")) {
-            return indexOffield;
-        } else if (kind.equals("var")) {
-            return indexOflocal;
-        } else if (kind.equals("argument")) {
-            return indexofargument;
-        } else {
-            System.out.println("invalid variable");
-            return 0;
+    int varCount(Kind kind) {
+        switch (kind) {
+            case STATIC:
+                return indexOfstatic;
+            case FIELD:
+                return indexOffield;
+            case VAR:
+                return indexOflocal;
+            default:
+                return indexofargument;
         }
     }
 
@@ -98,9 +116,9 @@ public class SymbolTable {
      * Returns NONE if the identifier is unknown in the current scope.
      *
      * @param name
-     * @return String - kind of the named identifier in the current scope
+     * @return Kind - kind of the named identifier in the current scope
      */
-    String kindOf(String name) {
+    Kind kindOf(String name) {
         Variable localVariable = getVariable(name);
         return localVariable != null ? localVariable.getKind() : null;
     }
@@ -146,10 +164,11 @@ public class SymbolTable {
      */
     public class Variable {
 
-        private String name, type, kind;
+        private String name, type;
+        private Kind kind;
         private int index;
 
-        Variable(String name, String type, String kind, int index) {
+        Variable(String name, String type, Kind kind, int index) {
             this.name = name;
             this.type = type;
             this.kind = kind;
@@ -168,7 +187,7 @@ public class SymbolTable {
             return index;
         }
 
-        public String getKind() {
+        public Kind getKind() {
             return kind;
         }
     }
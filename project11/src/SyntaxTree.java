@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * this class represent the syntax tree of a Jack class, in an arena of primitive arrays: a node is an
+ * index, and its kind, its value and the end of its subtree are kept in parallel arrays. the nodes are
+ * added in preorder, so the first child of a node is the node after it, the next sibling of a node is
+ * the end of its subtree, and a subtree is a range of indexes.
+ * <p>
+ * the value of a node depends on its kind: a name, a type, a keyword or a string constant is an index
+ * of a string in the string pool of the tree, an integer constant is its value, an operator is its
+ * symbol, and the qualifier of a call is a string or NONE.
+ * <p>
+ * the tree holds the class node and a single declaration of the class at a time: the parser passes
+ * every declaration to the visitors of the tree as soon as it is read, and then reuses its nodes for
+ * the next one, so a class of any size is parsed in the memory of its largest subroutine.
+ */
+public class SyntaxTree {
+
+    /*********************** Constants **********************/
+    static final int NONE = -1;
+
+    // the kinds of nodes, and their children
+    static final byte CLASS = 0; // value: the class name. its declarations are visited one at a time
+    static final byte CLASS_VAR_DEC = 1; // value: static or field. children: TYPE NAME+
+    static final byte SUBROUTINE_DEC = 2; // value: constructor, function or method.
+    // children: TYPE NAME PARAMETER_LIST SUBROUTINE_BODY
+    static final byte PARAMETER_LIST = 3; // children: (TYPE NAME)*
+    static final byte SUBROUTINE_BODY = 4; // children: VAR_DEC* STATEMENTS
+    static final byte VAR_DEC = 5; // children: TYPE NAME+
+    static final byte TYPE = 6; // value: the type name
+    static final byte NAME = 7; // value: the name
+    static final byte STATEMENTS = 8; // children: statements
+    static final byte LET = 9; // children: NAME EXPRESSION, or NAME EXPRESSION(index) EXPRESSION
+    static final byte IF = 10; // children: EXPRESSION STATEMENTS [STATEMENTS(else)]
+    static final byte WHILE = 11; // children: EXPRESSION STATEMENTS
+    static final byte DO = 12; // children: CALL
+    static final byte RETURN = 13; // children: [EXPRESSION]
+    static final byte EXPRESSION = 14; // children: term (OP term)*
+    static final byte OP = 15; // value: the operator symbol
+    static final byte INT_CONST = 16; // value: the integer
+    static final byte STRING_CONST = 17; // value: the string
+    static final byte KEYWORD_CONST = 18; // value: true, false, null or this
+    static final byte VARIABLE = 19; // value: the variable name
+    static final byte ARRAY_ENTRY = 20; // value: the array name. children: EXPRESSION(index)
+    static final byte CALL = 21; // value: the qualifier, a class or a variable, or NONE.
+    // children: NAME(subroutine) EXPRESSION_LIST
+    static final byte PAREN = 22; // children: EXPRESSION
+    static final byte UNARY = 23; // value: the operator symbol. children: term
+    static final byte EXPRESSION_LIST = 24; // children: EXPRESSION*
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * a backend of the compiler, that visits the declarations of a class one at a time, in the order
+     * of the source.
+     */
+    interface Visitor {
+
+        /**
+         * visits the start of a class, before its declarations.
+         *
+         * @param tree      - the tree
+         * @param classNode - the class node, that has no children yet
+         * @throws IOException
+         */
+        void visitClass(SyntaxTree tree, int classNode) throws IOException;
+
+        /**
+         * visits a declaration of the class. its nodes are valid only during the visit.
+         *
+         * @param tree        - the tree
+         * @param declaration - a CLASS_VAR_DEC or SUBROUTINE_DEC node
+         * @throws IOException
+         */
+        void visitDeclaration(SyntaxTree tree, int declaration) throws IOException;
+
+        /**
+         * visits the end of a class, after its declarations.
+         *
+         * @param tree      - the tree
+         * @param classNode - the class node
+         * @throws IOException
+         */
+        void endClass(SyntaxTree tree, int classNode) throws IOException;
+    }
+
+    /*********************** Data Members ******************/
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private String[] strings = new String[INITIAL_CAPACITY];
+    private int stringCount = 0;
+
+
+    /**
+     * @param node - a node
+     * @return the kind of the node
+     */
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * @param node - a node
+     * @return the value of the node
+     */
+    int value(int node) {
+        return values[node];
+    }
+
+    /**
+     * @param node - a node whose value is a string
+     * @return the string of the node
+     */
+    String text(int node) {
+        return strings[values[node]];
+    }
+
+    /**
+     * @param node - a node whose value is a string, or NONE
+     * @return the string of the node, or null
+     */
+    String textOrNull(int node) {
+        return values[node] == NONE ? null : strings[values[node]];
+    }
+
+    /**
+     * @param node - a node
+     * @return the first child of the node, or NONE
+     */
+    int firstChild(int node) {
+        return node + 1 < ends[node] ? node + 1 : NONE;
+    }
+
+    /**
+     * @param parent - a node
+     * @param child  - a child of the parent
+     * @return the next child of the parent, or NONE
+     */
+    int nextSibling(int parent, int child) {
+        return ends[child] < ends[parent] ? ends[child] : NONE;
+    }
+
+    /**
+     * @param node - a node
+     * @return the number of children of the node
+     */
+    int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild(node); child != NONE; child = nextSibling(node, child)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param node  - a node
+     * @param index - index of a child of the node
+     * @return the child at that index
+     */
+    int child(int node, int index) {
+        int child = firstChild(node);
+        for (int i = 0; i < index; i++) {
+            child = nextSibling(node, child);
+        }
+        return child;
+    }
+
+    /**
+     * adds a node, whose children are the nodes added until it is closed.
+     *
+     * @param kind  - kind of the node
+     * @param value - value of the node
+     * @return the new node
+     */
+    int open(byte kind, int value) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        kinds[size] = kind;
+        values[size] = value;
+        ends[size] = size + 1;
+        return size++;
+    }
+
+    /**
+     * ends the children of a node.
+     *
+     * @param node - an open node
+     */
+    void close(int node) {
+        ends[node] = size;
+    }
+
+    /**
+     * adds a node without children.
+     *
+     * @param kind  - kind of the node
+     * @param value - value of the node
+     * @return the new node
+     */
+    int leaf(byte kind, int value) {
+        return open(kind, value);
+    }
+
+    /**
+     * @param text - a name, a keyword or a string constant
+     * @return the index of the text in the string pool
+     */
+    int addString(String text) {
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, stringCount * 2);
+        }
+        strings[stringCount] = text;
+        return stringCount++;
+    }
+
+    /**
+     * @return a mark of the current size of the tree
+     */
+    long mark() {
+        return ((long) size << 32) | stringCount;
+    }
+
+    /**
+     * removes all the nodes and strings that were added after a mark, so they are reused.
+     *
+     * @param mark - a mark of the tree
+     */
+    void reset(long mark) {
+        size = (int) (mark >>> 32);
+        int newStringCount = (int) mark;
+        Arrays.fill(strings, newStringCount, stringCount, null);
+        stringCount = newStringCount;
+    }
+
+
+}
@@ -1,65 +1,68 @@
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Hashtable;
 
 /**
  * This class writes VM commands into a file. It encapsulates the VM command
  * syntax.
+ * the commands are appended as bytes into a reusable buffer, that is written to the output whenever it
+ * fills up: segments and commands are enums that hold their VM text encoded once, names are ascii and
+ * are copied char by char, and numbers are written digit by digit, so no command creates a String.
  */
 public class VMWriter {
 
     /********************* Constants ************************/
     private static final String INPUT_FILE_SUFFIX = ".jack";
     private static final String OUTPUT_FILE_SUFFIX = ".vm";
+    private static final int CAPACITY = 1 << 13;
+    private static final int MAX_INT_LENGTH = 11;
 
-    private static final String RETURN = "return";
-    private static final String FUNCTION = "function ";
-    private static final String CALL = "call ";
-    private static final String IF_GOTO = "if-goto ";
-    private static final String GOTO = "goto ";
-    private static final String LABEL = "label ";
-    private static final String POP = "pop ";
-    private static final String PUSH = "push ";
-    private static final Hashtable<String, String> arithTranslatorHashTable =
-            new Hashtable<>();
-    private static final Hashtable<String, String> segTranslatorHashTable =
-            new Hashtable<>();
-    private static final ArrayList<String> segTranslatorList = new ArrayList<>();
-
-    static {
-        arithTranslatorHashTable.put("<", "lt");
-        arithTranslatorHashTable.put(">", "gt");
-        arithTranslatorHashTable.put("=", "eq");
-        arithTranslatorHashTable.put("+", "add");
-        arithTranslatorHashTable.put("~", "not");
-        arithTranslatorHashTable.put("|", "or");
-        arithTranslatorHashTable.put("&", "and");
-        arithTranslatorHashTable.put("-", "sub");
-    }
-
-    static {
-        segTranslatorHashTable.put("var", "local");
-        segTranslatorHashTable.put("field", "this");
-        segTranslatorHashTable.put("arg", "argument");
-    }
-
-    static {
-        segTranslatorList.add("static");
-        segTranslatorList.add("local");
-        segTranslatorList.add("temp");
-        segTranslatorList.add("this");
-        segTranslatorList.add("that");
-        segTranslatorList.add("argument");
-        segTranslatorList.add("constant");
-        segTranslatorList.add("pointer");
+    private static final byte[] RETURN = ascii("return\n");
+    private static final byte[] FUNCTION = ascii("function ");
+    private static final byte[] CALL = ascii("call ");
+    private static final byte[] IF_GOTO = ascii("if-goto ");
+    private static final byte[] GOTO = ascii("goto ");
+    private static final byte[] LABEL = ascii("label ");
+
+    /**
+     * the memory segments of the VM.
+     */
+    enum Segment {
+        CONSTANT("constant"), ARGUMENT("argument"), LOCAL("local"), STATIC("static"), THIS("this"),
+        THAT("that"), POINTER("pointer"), TEMP("temp");
+
+        private final byte[] push;
+        private final byte[] pop;
+
+        Segment(String name) {
+            this.push = ascii("push " + name + " ");
+            this.pop = ascii("pop " + name + " ");
+        }
+    }
+
+    /**
+     * the arithmetic and logical commands of the VM.
+     */
+    enum Command {
+        ADD("add"), SUB("sub"), NEG("neg"), EQ("eq"), GT("gt"), LT("lt"), AND("and"), OR("or"), NOT("not");
+
+        private final byte[] line;
+
+        Command(String name) {
+            this.line = ascii(name + "\n");
+        }
     }
 
     /******************** Data Members *********************/
-    private PrintWriter writer;
+    private final OutputStream stream;
+    private final Writer writer;
+    private final byte[] bytes = new byte[CAPACITY];
+    private final char[] chars;
+    private int size = 0;
 
 
     /**
@@ -70,86 +73,111 @@ public class VMWriter {
      */
     public VMWriter(File output) throws IOException {
         if (output.isDirectory()) {
-            writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output.toPath().toAbsolutePath().resolve(output.getName() + ".vm").toString())));
+            stream = Files.newOutputStream(Paths.get(output.toPath().toAbsolutePath().resolve(output.getName() + ".vm").toString()));
         } else {
-            writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output.getPath().replace(INPUT_FILE_SUFFIX, OUTPUT_FILE_SUFFIX))));
+            stream = Files.newOutputStream(Paths.get(output.getPath().replace(INPUT_FILE_SUFFIX, OUTPUT_FILE_SUFFIX)));
         }
+        writer = null;
+        chars = null;
+    }
+
+    /**
+     * Creates a VMWriter that writes VM commands into a given stream, for example into memory, to pass
+     * them straight to the VM translator.
+     *
+     * @param output - output stream for VM code, one command per line
+     */
+    public VMWriter(Writer output) {
+        stream = null;
+        writer = output;
+        chars = new char[CAPACITY];
     }
 
     /**
      * Closes the output file.
+     *
+     * @throws IOException
      */
-    public void close() {
-        writer.close();
+    public void close() throws IOException {
+        flush();
+        if (stream != null) {
+            stream.close();
+        } else {
+            writer.close();
+        }
     }
 
     /**
      * Writes a VM push command
      *
-     * @param segment - string: CONST, ARG, LOCAL, STATIC, THIS,THAT, POINTER, TEMP
+     * @param segment - CONSTANT, ARGUMENT, LOCAL, STATIC, THIS, THAT, POINTER, TEMP
      * @param index   - int.
+     * @throws IOException
      */
-    void writePush(String segment, int index) {
-        if (segTranslatorList.contains(segment)) {
-            writer.println(PUSH + segment + " " + index);
-        } else if (segTranslatorHashTable.containsKey(segment)) {
-            writer.println(PUSH + segTranslatorHashTable.get(segment) + " " + index);
-        }
+    void writePush(Segment segment, int index) throws IOException {
+        append(segment.push);
+        append(index);
     }
 
     /**
      * Writes a VM pop command.
      *
-     * @param segment - string: CONST, ARG, LOCAL, STATIC, THIS,THAT, POINTER, TEMP
+     * @param segment - CONSTANT, ARGUMENT, LOCAL, STATIC, THIS, THAT, POINTER, TEMP
      * @param index   - int.
+     * @throws IOException
      */
-    void writePop(String segment, int index) {
-        if (segTranslatorList.contains(segment)) {
-            writer.println(POP + segment + " " + index);
-        } else if (segTranslatorHashTable.containsKey(segment)) {
-            writer.println(POP + segTranslatorHashTable.get(segment) + " " + index);
-        }
+    void writePop(Segment segment, int index) throws IOException {
+        append(segment.pop);
+        append(index);
     }
 
     /**
      * Writes a VM arithmetic command
      *
      * @param command - VM arithmetic command.
+     * @throws IOException
      */
-    void WriteArithmetic(String command) {
-        if (command.equals("neg")) {
-            writer.println(command);
-        } else if (arithTranslatorHashTable.containsKey(command)) {
-
-            writer.println(arithTranslatorHashTable.get(command));
-        }
+    void WriteArithmetic(Command command) throws IOException {
+        append(command.line);
     }
 
     /**
      * Writes a VM label command.
      *
-     * @param label
+     * @param label - prefix of the label
+     * @param index - number of the label, written after its prefix
+     * @throws IOException
      */
-    void WriteLabel(String label) {
-        writer.println(LABEL + label);
+    void WriteLabel(String label, int index) throws IOException {
+        append(LABEL);
+        append(label);
+        append(index);
     }
 
     /**
-     * Writes a VM label command
+     * Writes a VM goto command
      *
-     * @param label
+     * @param label - prefix of the label
+     * @param index - number of the label, written after its prefix
+     * @throws IOException
      */
-    void WriteGoto(String label) {
-        writer.println(GOTO + label);
+    void WriteGoto(String label, int index) throws IOException {
+        append(GOTO);
+        append(label);
+        append(index);
     }
 
     /**
      * Writes a VM If-goto command
      *
-     * @param label
+     * @param label - prefix of the label
+     * @param index - number of the label, written after its prefix
+     * @throws IOException
      */
-    void WriteIf(String label) {
-        writer.println(IF_GOTO + label);
+    void WriteIf(String label, int index) throws IOException {
+        append(IF_GOTO);
+        append(label);
+        append(index);
     }
 
     /**
@@ -157,9 +185,13 @@ public class VMWriter {
      *
      * @param name
      * @param nArgs
+     * @throws IOException
      */
-    void writeCall(String name, int nArgs) {
-        writer.println(CALL + name + " " + nArgs);
+    void writeCall(String name, int nArgs) throws IOException {
+        append(CALL);
+        append(name);
+        append(' ');
+        append(nArgs);
     }
 
     /**
@@ -167,16 +199,124 @@ public class VMWriter {
      *
      * @param name
      * @param nLocals
+     * @throws IOException
      */
-    void writeFunction(String name, int nLocals) {
-        writer.println(FUNCTION + name + " " + nLocals);
+    void writeFunction(String name, int nLocals) throws IOException {
+        append(FUNCTION);
+        append(name);
+        append(' ');
+        append(nLocals);
     }
 
     /**
      * Writes a VM return command
+     *
+     * @throws IOException
+     */
+    void writeReturn() throws IOException {
+        append(RETURN);
+    }
+
+    /**
+     * @param text - ascii text
+     * @return the bytes of the text, encoded once
      */
-    void writeReturn() {
-        writer.println(RETURN);
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * appends pre encoded text.
+     *
+     * @param text - bytes of ascii text
+     * @throws IOException
+     */
+    private void append(byte[] text) throws IOException {
+        reserve(text.length);
+        System.arraycopy(text, 0, bytes, size, text.length);
+        size += text.length;
+    }
+
+    /**
+     * appends ascii text, char by char.
+     *
+     * @param text - ascii text, such as a name or a label
+     * @throws IOException
+     */
+    private void append(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    /**
+     * appends a single ascii char.
+     *
+     * @param c - ascii char
+     * @throws IOException
+     */
+    private void append(char c) throws IOException {
+        if (size == bytes.length) {
+            flush();
+        }
+        bytes[size++] = (byte) c;
+    }
+
+    /**
+     * appends the decimal digits of a number and ends the line.
+     *
+     * @param value - the number
+     * @throws IOException
+     */
+    private void append(int value) throws IOException {
+        reserve(MAX_INT_LENGTH + 1);
+        long digits = value;
+        if (digits < 0) {
+            bytes[size++] = '-';
+            digits = -digits;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + digits % 10);
+            digits /= 10;
+        } while (digits > 0);
+        // the digits were written from the lowest one, reverse them
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte digit = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = digit;
+        }
+        bytes[size++] = '\n';
+    }
+
+    /**
+     * makes room for the given number of bytes, by writing the buffer to the output.
+     *
+     * @param length - number of bytes about to be appended, at most the capacity of the buffer
+     * @throws IOException
+     */
+    private void reserve(int length) throws IOException {
+        if (size + length > bytes.length) {
+            flush();
+        }
+    }
+
+    /**
+     * writes the buffered commands to the output.
+     *
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+        if (stream != null) {
+            stream.write(bytes, 0, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                chars[i] = (char) bytes[i];
+            }
+            writer.write(chars, 0, size);
+        }
+        size = 0;
     }
 
 
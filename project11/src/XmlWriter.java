@@ -0,0 +1,474 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class writes the parsed structure of a Jack class into an XML file, as a backend of its
+ * SyntaxTree: every syntactic element of the Jack grammar is a tag, and every token is a line in the tag
+ * of its element, with its type and its text. the output is the same as the output of the JackAnalyzer,
+ * but is written from the tree that the compiler already parsed, so the class is read only once.
+ */
+public class XmlWriter implements SyntaxTree.Visitor {
+
+    /************************ Constants *****************************/
+    private static final String INPUT_FILE_SUFFIX = ".jack";
+    private static final String OUTPUT_FILE_SUFFIX = ".xml";
+    private static final String KEYWORD_TYPE = "keyword";
+    private static final String SYMBOL_TYPE = "symbol";
+    private static final String IDENTIFIER_TYPE = "identifier";
+    private static final String INT_CONST_TYPE = "integerConstant";
+    private static final String STRING_CONST_TYPE = "stringConstant";
+    private static final String CLASS_TAG = "class";
+    private static final String CLASS_VAR_DEC_TAG = "classVarDec";
+    private static final String SUB_TAG = "subroutineDec";
+    private static final String PAR_LIST_TAG = "parameterList";
+    private static final String SUB_BODY_TAG = "subroutineBody";
+    private static final String VAR_DEC_TAG = "varDec";
+    private static final String STAT_TAG = "statements";
+    private static final String LET_TAG = "letStatement";
+    private static final String IF_TAG = "ifStatement";
+    private static final String WHILE_TAG = "whileStatement";
+    private static final String DO_TAG = "doStatement";
+    private static final String RETURN_TAG = "returnStatement";
+    private static final String EXPRESSION_TAG = "expression";
+    private static final String EXPRESSION_LIST_TAG = "expressionList";
+    private static final String TERM_TAG = "term";
+    private static final String CLASS_STR = "class";
+    private static final String VAR_STR = "var";
+    private static final String LET_STR = "let";
+    private static final String IF_STR = "if";
+    private static final String ELSE_STR = "else";
+    private static final String WHILE_STR = "while";
+    private static final String DO_STR = "do";
+    private static final String RETURN_STR = "return";
+    private static final String PRIMITIVE_TYPES = "int|char|boolean|void";
+
+    /************************ Data Member *************************/
+    private final PrintWriter writer;
+    private int tabs = 0;
+
+
+    /**
+     * Creates a new file called Xxx.xml for a Jack class Xxx.jack.
+     *
+     * @param input - Xxx.jack file
+     * @throws IOException
+     */
+    public XmlWriter(File input) throws IOException {
+        this(Files.newBufferedWriter(Paths.get(input.getPath().replace(INPUT_FILE_SUFFIX, OUTPUT_FILE_SUFFIX))));
+    }
+
+    /**
+     * Creates an XmlWriter that writes into a given stream.
+     *
+     * @param output - output stream for the XML
+     */
+    public XmlWriter(Writer output) {
+        writer = new PrintWriter(output);
+    }
+
+    /**
+     * Closes the output file.
+     */
+    void close() {
+        writer.close();
+    }
+
+    @Override
+    public void visitClass(SyntaxTree tree, int classNode) {
+        openTag(CLASS_TAG);
+        printToken(KEYWORD_TYPE, CLASS_STR);
+        printToken(IDENTIFIER_TYPE, tree.text(classNode));
+        printSymbol('{');
+    }
+
+    @Override
+    public void visitDeclaration(SyntaxTree tree, int declaration) {
+        if (tree.kind(declaration) == SyntaxTree.CLASS_VAR_DEC) {
+            openTag(CLASS_VAR_DEC_TAG);
+            printToken(KEYWORD_TYPE, tree.text(declaration));
+            printDec(tree, declaration);
+            closeTag(CLASS_VAR_DEC_TAG);
+        } else {
+            printSubroutine(tree, declaration);
+        }
+    }
+
+    @Override
+    public void endClass(SyntaxTree tree, int classNode) {
+        printSymbol('}');
+        closeTag(CLASS_TAG);
+    }
+
+    /**
+     * prints a complete method, function, or constructor.
+     *
+     * @param tree - the tree
+     * @param node - the subroutine
+     */
+    private void printSubroutine(SyntaxTree tree, int node) {
+        openTag(SUB_TAG);
+        printToken(KEYWORD_TYPE, tree.text(node));
+        int type = tree.firstChild(node);
+        printType(tree, type);
+        int name = tree.nextSibling(node, type);
+        printToken(IDENTIFIER_TYPE, tree.text(name));
+        int parameters = tree.nextSibling(node, name);
+        printSymbol('(');
+        openTag(PAR_LIST_TAG);
+        for (int child = tree.firstChild(parameters); child != SyntaxTree.NONE; ) {
+            if (child != tree.firstChild(parameters)) {
+                printSymbol(',');
+            }
+            printType(tree, child);
+            child = tree.nextSibling(parameters, child);
+            printToken(IDENTIFIER_TYPE, tree.text(child));
+            child = tree.nextSibling(parameters, child);
+        }
+        closeTag(PAR_LIST_TAG);
+        printSymbol(')');
+
+        int body = tree.nextSibling(node, parameters);
+        openTag(SUB_BODY_TAG);
+        printSymbol('{');
+        int child = tree.firstChild(body);
+        while (tree.kind(child) == SyntaxTree.VAR_DEC) {
+            openTag(VAR_DEC_TAG);
+            printToken(KEYWORD_TYPE, VAR_STR);
+            printDec(tree, child);
+            closeTag(VAR_DEC_TAG);
+            child = tree.nextSibling(body, child);
+        }
+        printStatements(tree, child);
+        printSymbol('}');
+        closeTag(SUB_BODY_TAG);
+        closeTag(SUB_TAG);
+    }
+
+    /**
+     * prints the type and the names of a declaration, up to its semicolon.
+     *
+     * @param tree - the tree
+     * @param node - a declaration, whose first child is the type and the rest are names
+     */
+    private void printDec(SyntaxTree tree, int node) {
+        int type = tree.firstChild(node);
+        printType(tree, type);
+        for (int name = tree.nextSibling(node, type); name != SyntaxTree.NONE; name = tree.nextSibling(node, name)) {
+            if (name != tree.nextSibling(node, type)) {
+                printSymbol(',');
+            }
+            printToken(IDENTIFIER_TYPE, tree.text(name));
+        }
+        printSymbol(';');
+    }
+
+    /**
+     * prints a sequence of statements.
+     *
+     * @param tree - the tree
+     * @param node - the statements
+     */
+    private void printStatements(SyntaxTree tree, int node) {
+        openTag(STAT_TAG);
+        for (int child = tree.firstChild(node); child != SyntaxTree.NONE; child = tree.nextSibling(node, child)) {
+            switch (tree.kind(child)) {
+                case SyntaxTree.LET:
+                    printLet(tree, child);
+                    break;
+                case SyntaxTree.IF:
+                    printIf(tree, child);
+                    break;
+                case SyntaxTree.WHILE:
+                    printWhile(tree, child);
+                    break;
+                case SyntaxTree.DO:
+                    openTag(DO_TAG);
+                    printToken(KEYWORD_TYPE, DO_STR);
+                    printCall(tree, tree.firstChild(child));
+                    printSymbol(';');
+                    closeTag(DO_TAG);
+                    break;
+                default:
+                    openTag(RETURN_TAG);
+                    printToken(KEYWORD_TYPE, RETURN_STR);
+                    if (tree.firstChild(child) != SyntaxTree.NONE) {
+                        printExpression(tree, tree.firstChild(child));
+                    }
+                    printSymbol(';');
+                    closeTag(RETURN_TAG);
+                    break;
+            }
+        }
+        closeTag(STAT_TAG);
+    }
+
+    /**
+     * prints a let statement.
+     *
+     * @param tree - the tree
+     * @param node - the statement
+     */
+    private void printLet(SyntaxTree tree, int node) {
+        openTag(LET_TAG);
+        printToken(KEYWORD_TYPE, LET_STR);
+        int name = tree.firstChild(node);
+        printToken(IDENTIFIER_TYPE, tree.text(name));
+        int expression = tree.nextSibling(node, name);
+        int value = tree.nextSibling(node, expression);
+        if (value != SyntaxTree.NONE) {
+            printSymbol('[');
+            printExpression(tree, expression);
+            printSymbol(']');
+            expression = value;
+        }
+        printSymbol('=');
+        printExpression(tree, expression);
+        printSymbol(';');
+        closeTag(LET_TAG);
+    }
+
+    /**
+     * prints an if statement, possibly with a trailing else clause.
+     *
+     * @param tree - the tree
+     * @param node - the statement
+     */
+    private void printIf(SyntaxTree tree, int node) {
+        openTag(IF_TAG);
+        printToken(KEYWORD_TYPE, IF_STR);
+        int condition = tree.firstChild(node);
+        printCondition(tree, condition);
+        int statements = tree.nextSibling(node, condition);
+        printBlock(tree, statements);
+        int elseStatements = tree.nextSibling(node, statements);
+        if (elseStatements != SyntaxTree.NONE) {
+            printToken(KEYWORD_TYPE, ELSE_STR);
+            printBlock(tree, elseStatements);
+        }
+        closeTag(IF_TAG);
+    }
+
+    /**
+     * prints a while statement.
+     *
+     * @param tree - the tree
+     * @param node - the statement
+     */
+    private void printWhile(SyntaxTree tree, int node) {
+        openTag(WHILE_TAG);
+        printToken(KEYWORD_TYPE, WHILE_STR);
+        int condition = tree.firstChild(node);
+        printCondition(tree, condition);
+        printBlock(tree, tree.nextSibling(node, condition));
+        closeTag(WHILE_TAG);
+    }
+
+    /**
+     * prints an expression in circular brackets.
+     *
+     * @param tree - the tree
+     * @param node - the expression
+     */
+    private void printCondition(SyntaxTree tree, int node) {
+        printSymbol('(');
+        printExpression(tree, node);
+        printSymbol(')');
+    }
+
+    /**
+     * prints statements in curly brackets.
+     *
+     * @param tree - the tree
+     * @param node - the statements
+     */
+    private void printBlock(SyntaxTree tree, int node) {
+        printSymbol('{');
+        printStatements(tree, node);
+        printSymbol('}');
+    }
+
+    /**
+     * prints an expression, its terms and the operators between them.
+     *
+     * @param tree - the tree
+     * @param node - the expression
+     */
+    private void printExpression(SyntaxTree tree, int node) {
+        openTag(EXPRESSION_TAG);
+        for (int child = tree.firstChild(node); child != SyntaxTree.NONE; child = tree.nextSibling(node, child)) {
+            if (tree.kind(child) == SyntaxTree.OP) {
+                printSymbol((char) tree.value(child));
+            } else {
+                printTerm(tree, child);
+            }
+        }
+        closeTag(EXPRESSION_TAG);
+    }
+
+    /**
+     * prints a term.
+     *
+     * @param tree - the tree
+     * @param node - the term
+     */
+    private void printTerm(SyntaxTree tree, int node) {
+        openTag(TERM_TAG);
+        switch (tree.kind(node)) {
+            case SyntaxTree.INT_CONST:
+                printToken(INT_CONST_TYPE, String.valueOf(tree.value(node)));
+                break;
+            case SyntaxTree.STRING_CONST:
+                printToken(STRING_CONST_TYPE, escape(tree.text(node)));
+                break;
+            case SyntaxTree.KEYWORD_CONST:
+                printToken(KEYWORD_TYPE, tree.text(node));
+                break;
+            case SyntaxTree.VARIABLE:
+                printToken(IDENTIFIER_TYPE, tree.text(node));
+                break;
+            case SyntaxTree.ARRAY_ENTRY:
+                printToken(IDENTIFIER_TYPE, tree.text(node));
+                printSymbol('[');
+                printExpression(tree, tree.firstChild(node));
+                printSymbol(']');
+                break;
+            case SyntaxTree.CALL:
+                printCall(tree, node);
+                break;
+            case SyntaxTree.PAREN:
+                printCondition(tree, tree.firstChild(node));
+                break;
+            default:
+                printSymbol((char) tree.value(node));
+                printTerm(tree, tree.firstChild(node));
+                break;
+        }
+        closeTag(TERM_TAG);
+    }
+
+    /**
+     * prints the tokens of a subroutine call.
+     *
+     * @param tree - the tree
+     * @param node - the call
+     */
+    private void printCall(SyntaxTree tree, int node) {
+        if (tree.textOrNull(node) != null) {
+            printToken(IDENTIFIER_TYPE, tree.text(node));
+            printSymbol('.');
+        }
+        int name = tree.firstChild(node);
+        printToken(IDENTIFIER_TYPE, tree.text(name));
+        printSymbol('(');
+        int list = tree.nextSibling(node, name);
+        openTag(EXPRESSION_LIST_TAG);
+        for (int child = tree.firstChild(list); child != SyntaxTree.NONE; child = tree.nextSibling(list, child)) {
+            if (child != tree.firstChild(list)) {
+                printSymbol(',');
+            }
+            printExpression(tree, child);
+        }
+        closeTag(EXPRESSION_LIST_TAG);
+        printSymbol(')');
+    }
+
+    /**
+     * prints a type, that is a keyword if it is primitive and an identifier if it is a class.
+     *
+     * @param tree - the tree
+     * @param node - the type
+     */
+    private void printType(SyntaxTree tree, int node) {
+        String type = tree.text(node);
+        printToken(type.matches(PRIMITIVE_TYPES) ? KEYWORD_TYPE : IDENTIFIER_TYPE, type);
+    }
+
+    /**
+     * prints a symbol token.
+     *
+     * @param symbol - the symbol
+     */
+    private void printSymbol(char symbol) {
+        printToken(SYMBOL_TYPE, escape(String.valueOf(symbol)));
+    }
+
+    /**
+     * prints a token in its type tag, on a line of its own.
+     *
+     * @param tokenType - the type of the token
+     * @param token     - the text of the token, escaped
+     */
+    private void printToken(String tokenType, String token) {
+        tabPrinter();
+        tabPrinter();
+        writer.println("<" + tokenType + "> " + token + " </" + tokenType + ">");
+    }
+
+    /**
+     * prints an open tag, and indents the lines inside it.
+     *
+     * @param tag - the tag
+     */
+    private void openTag(String tag) {
+        tabPrinter();
+        writer.println("<" + tag + ">");
+        tabs++;
+    }
+
+    /**
+     * prints a close tag, with the indentation of the lines inside it.
+     *
+     * @param tag - the tag
+     */
+    private void closeTag(String tag) {
+        tabPrinter();
+        tabs--;
+        writer.println("</" + tag + ">");
+    }
+
+    /**
+     * just prints tabs according to 'tabs' field.
+     */
+    private void tabPrinter() {
+        for (int i = 0; i < tabs; i++) {
+            writer.print(' ');
+        }
+    }
+
+    /**
+     * replaces the chars that are not valid in XML text by their valid representation.
+     *
+     * @param text - a symbol or a string constant
+     * @return the valid text
+     */
+    private static String escape(String text) {
+        StringBuilder valid = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    valid.append("&lt;");
+                    break;
+                case '>':
+                    valid.append("&gt;");
+                    break;
+                case '"':
+                    valid.append("&quot;");
+                    break;
+                case '&':
+                    valid.append("&amp;");
+                    break;
+                default:
+                    valid.append(c);
+                    break;
+            }
+        }
+        return valid.toString();
+    }
+
+
+}
@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * builds a Jack program into Hack binary code in one run, without intermediate files. the compiler, the
+ * vm translator and the assembler run as concurrent stages:
+ * 1. the Jack classes are compiled in memory by a pool of threads. the compiled classes are passed to the
+ * translator through a bounded queue, in the order of the files, so the compilers run at most a queue
+ * ahead of the translator.
+ * 2. the translator reads each class into its call graph as soon as it is compiled. it generates the
+ * code after the last class, since the dropping of dead functions, and inlining and the allocation of the
+ * statics when they are on, depend on the whole program, and writes the assembly code into a pipe.
+ * 3. the assembler runs the first parse over the pipe while the code is still written, and writes
+ * Xxx.hack when the translator is done. the binary code is written into a temporary file, that replaces
+ * Xxx.hack only if all the stages succeed.
+ * <p>
+ * usage: java Toolchain source -p06 classesDir [-threads n] [translator options]
+ * source is Xxx.jack or a directory Xxx of .jack files. the .vm files next to the Jack classes, such as
+ * the compiled OS, are linked with them, except the stale Xxx.vm of a class Xxx.jack that is built. the
+ * build fails, without writing Xxx.hack, if Sys.init or a called function is defined nowhere. the
+ * assembler of project06 is loaded from its compiled classes in classesDir, that must be built first
+ * since project06 is not a module, with its own class loader since its Parser and SymbolTable have the
+ * names of classes of the translator and the compiler. the translator options are those of VMtranslator; -map and -metrics write Xxx.map and
+ * Xxx.metrics.json next to Xxx.hack.
+ */
+public class Toolchain {
+
+    /*********************** Constants **********************/
+    private static final String ASSEMBLER_CLASS = "Assembler";
+    private static final String MISSING_PROJECT06_MESSAGE = "missing -p06 classesDir, the directory of the "
+            + "compiled classes of the project06 assembler";
+    private static final String MISSING_VALUE_MESSAGE = "missing value of option: ";
+    private static final String JACK_SUFFIX = ".jack";
+    private static final String VM_SUFFIX = ".vm";
+    private static final String HACK_SUFFIX = ".hack";
+    private static final String MAP_SUFFIX = ".map";
+    private static final String METRICS_SUFFIX = ".metrics.json";
+
+    /*********************** Data Members ******************/
+    private final Method assemble;
+    private final int threads;
+
+
+    /**
+     * Constructor of class
+     *
+     * @param project06 - directory of the compiled classes of the assembler
+     * @param threads   - number of threads that compile Jack classes
+     * @throws IOException if the assembler can not be loaded
+     */
+    public Toolchain(String project06, int threads) throws IOException {
+        this.threads = threads;
+        File classes = new File(project06).getAbsoluteFile();
+        if (!new File(classes, ASSEMBLER_CLASS + ".class").isFile()) {
+            throw new IOException("no " + ASSEMBLER_CLASS + ".class in " + classes + ", build project06 first");
+        }
+        try {
+            URL[] classPath = {classes.toURI().toURL()};
+            ClassLoader loader = new URLClassLoader(classPath, Toolchain.class.getClassLoader().getParent());
+            assemble = loader.loadClass(ASSEMBLER_CLASS).getMethod("assemble", Reader.class, Writer.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IOException("no assembler in " + classes, e);
+        }
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        File input = new File(Paths.get(args[0]).toAbsolutePath().toString());
+        String project06 = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> translatorArgs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p06":
+                    project06 = valueOf(args, ++i);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                default:
+                    translatorArgs.add(args[i]);
+            }
+        }
+        if (project06 == null) {
+            throw new IllegalArgumentException(MISSING_PROJECT06_MESSAGE);
+        }
+        TranslatorOptions options = TranslatorOptions.parse(translatorArgs.toArray(new String[0]), 0);
+        Toolchain toolchain = new Toolchain(project06, threads);
+
+        if (!input.isDirectory() && input.isFile() && input.getName().endsWith(JACK_SUFFIX)) {
+            List<File> jackFiles = Collections.singletonList(input);
+            toolchain.build(input, jackFiles, vmFilesOf(input.getParentFile(), jackFiles), options);
+
+        } else if (input.isDirectory()) {
+            String[] filesArray = input.list();
+            assert filesArray != null;
+            Arrays.sort(filesArray);
+            List<File> jackFiles = new ArrayList<>();
+            for (String fileName : filesArray) {
+                if (fileName.endsWith(JACK_SUFFIX)) {
+                    jackFiles.add(new File(input.toPath().toAbsolutePath().resolve(fileName).toString()));
+                }
+            }
+            toolchain.build(input, jackFiles, vmFilesOf(input, jackFiles), options);
+        }
+    }
+
+    /**
+     * @param args  - command line arguments
+     * @param index - index of the value of the option before it
+     * @return the value of the option
+     */
+    private static String valueOf(String[] args, int index) {
+        if (index == args.length) {
+            throw new IllegalArgumentException(MISSING_VALUE_MESSAGE + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * @param directory - directory of the Jack classes
+     * @param jackFiles - the Jack classes that are built
+     * @return the .vm files of the directory, in order, without the Xxx.vm of the classes that are built
+     */
+    private static List<File> vmFilesOf(File directory, List<File> jackFiles) {
+        String[] filesArray = directory.list();
+        assert filesArray != null;
+        Arrays.sort(filesArray);
+        List<String> builtNames = new ArrayList<>();
+        for (File jackFile : jackFiles) {
+            builtNames.add(jackFile.getName().replace(JACK_SUFFIX, VM_SUFFIX));
+        }
+        List<File> vmFiles = new ArrayList<>();
+        for (String fileName : filesArray) {
+            if (fileName.endsWith(VM_SUFFIX) && !builtNames.contains(fileName)) {
+                vmFiles.add(new File(directory.toPath().toAbsolutePath().resolve(fileName).toString()));
+            }
+        }
+        return vmFiles;
+    }
+
+    /**
+     * builds Jack classes and vm files into a single Xxx.hack file. the program must be complete: if
+     * Sys.init or a called function is not defined by any of the classes and vm files, the build fails.
+     *
+     * @param input     - the input file or directory, used to name the output files
+     * @param jackFiles - the Jack classes of the program
+     * @param vmFiles   - the compiled vm files of the program, such as the OS
+     * @param options   - the translation options
+     * @throws IOException if any of the stages fails
+     */
+    public void build(File input, List<File> jackFiles, List<File> vmFiles, TranslatorOptions options)
+            throws IOException {
+        options.setCompleteProgram(true);
+        BlockingQueue<Future<VmSource>> compiled = new ArrayBlockingQueue<>(threads);
+        ExecutorService compilers = Executors.newFixedThreadPool(threads);
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        Pipe assembly = Pipe.open();
+        Path output = outputPath(input, HACK_SUFFIX);
+        Path binaryFile = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName().toString(),
+                null);
+        try {
+            stages.submit(() -> {
+                for (File jackFile : jackFiles) {
+                    compiled.put(compilers.submit(() -> compile(jackFile)));
+                }
+                return null;
+            });
+            Future<Void> assembler = stages.submit(() -> {
+                try (Reader code = Channels.newReader(assembly.source(), StandardCharsets.US_ASCII.name());
+                     Writer binary = Files.newBufferedWriter(binaryFile)) {
+                    assembleCode(code, binary);
+                }
+                return null;
+            });
+
+            TranslationMetrics metrics;
+            try (FileChannel map = options.withSourceMap() ? openOutput(input, MAP_SUFFIX) : null) {
+                metrics = VMtranslator.translate(inOrder(compiled, jackFiles.size(), vmFiles), assembly.sink(),
+                        map, options);
+            } catch (IOException e) {
+                if (assembler.isDone()) {
+                    assembler.get(); // the pipe was closed by a failure of the assembler
+                }
+                throw e;
+            } finally {
+                assembly.sink().close(); // the end of the input of the assembler
+            }
+            assembler.get();
+            Files.move(binaryFile, output, StandardCopyOption.REPLACE_EXISTING);
+            if (metrics != null && options.withMetricsReport()) {
+                Files.write(outputPath(input, METRICS_SUFFIX), metrics.getReport().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } finally {
+            compilers.shutdownNow();
+            stages.shutdownNow();
+            Files.deleteIfExists(binaryFile);
+        }
+    }
+
+    /**
+     * compiles a Jack class into vm commends in memory.
+     *
+     * @param jackFile - Xxx.jack file
+     * @return the vm source Xxx
+     * @throws IOException
+     */
+    private static VmSource compile(File jackFile) throws IOException {
+        StringWriter code = new StringWriter();
+        try (Reader source = Files.newBufferedReader(jackFile.toPath());
+             CompilationEngine engine = new CompilationEngine(source, code)) {
+            engine.compileClass();
+        }
+        String name = jackFile.getName().replace(JACK_SUFFIX, "");
+        return VmSource.of(name, Arrays.asList(code.toString().split("\\R")));
+    }
+
+    /**
+     * runs the assembler over the assembly code, until its end. if the assembler fails, the code is
+     * closed, so the translator that writes it fails instead of waiting for a reader.
+     *
+     * @param code   - the assembly code
+     * @param binary - writer of the binary code
+     * @throws IOException
+     */
+    private void assembleCode(Reader code, Writer binary) throws IOException {
+        try {
+            assemble.invoke(null, code, binary);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            code.close();
+            throw asIOException(e.getCause());
+        }
+    }
+
+    /**
+     * @param compiled - the compilations of the classes, in the order of the files
+     * @param count    - the number of classes
+     * @param vmFiles  - the vm files that follow the classes
+     * @return an iterator that waits for each class to be compiled, and then reads the vm files
+     */
+    private static Iterator<VmSource> inOrder(BlockingQueue<Future<VmSource>> compiled, int count,
+                                              List<File> vmFiles) {
+        return new Iterator<VmSource>() {
+            private int taken = 0;
+
+            @Override
+            public boolean hasNext() {
+                return taken < count + vmFiles.size();
+            }
+
+            @Override
+            public VmSource next() {
+                if (taken >= count) {
+                    return VmSource.of(vmFiles.get(taken++ - count));
+                }
+                taken++;
+                try {
+                    return compiled.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException());
+                } catch (ExecutionException e) {
+                    throw new UncheckedIOException(asIOException(e.getCause()));
+                }
+            }
+        };
+    }
+
+    /**
+     * @param cause - the failure of a stage
+     * @return the failure as an IOException
+     */
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * @param input  - the input file or directory
+     * @param suffix - suffix of the output file
+     * @return Xxx.suffix next to an input file Xxx.jack, or Xxx/Xxx.suffix inside an input directory Xxx
+     */
+    private static Path outputPath(File input, String suffix) {
+        if (input.isDirectory()) {
+            return input.toPath().toAbsolutePath().resolve(input.getName() + suffix);
+        }
+        return Paths.get(input.getPath().replace(JACK_SUFFIX, suffix));
+    }
+
+    /**
+     * @param input  - the input file or directory
+     * @param suffix - suffix of the output file
+     * @return a channel that writes the output file from its start
+     * @throws IOException
+     */
+    private static FileChannel openOutput(File input, String suffix) throws IOException {
+        return FileChannel.open(outputPath(input, suffix), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+
+}